@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.batch;
+
+/**
+ * Result of a BatchSolver run
+ */
+public class BatchReport {
+
+	private final long solved;
+
+	private final long unsolved;
+
+	private final long invalid;
+
+	private final long exceeded;
+
+	private final long elapsedNanos;
+
+	private final int parallelism;
+
+	private final LatencyHistogram latencies;
+
+	/**
+	 * Constructor
+	 *
+	 * @param solved long - puzzles solved completely
+	 * @param unsolved long - puzzles the solver could not complete
+	 * @param invalid long - puzzles without a possible solution or with invalid input
+	 * @param exceeded long - puzzles stopped by the time or node budget
+	 * @param elapsedNanos long - wall clock time for the whole batch
+	 * @param parallelism int - the number of worker threads used
+	 * @param latencies LatencyHistogram - latency of each puzzle
+	 */
+	BatchReport(long solved, long unsolved, long invalid, long exceeded, long elapsedNanos,
+			int parallelism, LatencyHistogram latencies) {
+		this.solved = solved;
+		this.unsolved = unsolved;
+		this.invalid = invalid;
+		this.exceeded = exceeded;
+		this.elapsedNanos = elapsedNanos;
+		this.parallelism = parallelism;
+		this.latencies = latencies;
+	}
+
+	/**
+	 * @return long - the total number of puzzles
+	 */
+	public long getPuzzles() {
+		return solved + unsolved + invalid + exceeded;
+	}
+
+	/**
+	 * @return long - puzzles solved completely
+	 */
+	public long getSolved() {
+		return solved;
+	}
+
+	/**
+	 * @return long - puzzles the solver could not complete
+	 */
+	public long getUnsolved() {
+		return unsolved;
+	}
+
+	/**
+	 * @return long - puzzles without a possible solution or with invalid input
+	 */
+	public long getInvalid() {
+		return invalid;
+	}
+
+	/**
+	 * @return long - puzzles stopped by the time or node budget
+	 */
+	public long getExceeded() {
+		return exceeded;
+	}
+
+	/**
+	 * @return long - wall clock time for the whole batch in nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return int - the number of worker threads used
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return double - puzzles per second over the wall clock time
+	 */
+	public double getPuzzlesPerSecond() {
+		if (elapsedNanos == 0) {
+			return 0;
+		}
+		return getPuzzles() * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * @return LatencyHistogram - latency of each puzzle
+	 */
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Puzzles: ").append(getPuzzles());
+		builder.append(" solved: ").append(solved);
+		builder.append(" unsolved: ").append(unsolved);
+		builder.append(" invalid: ").append(invalid);
+		builder.append(" exceeded: ").append(exceeded).append('\n');
+		builder.append("Threads: ").append(parallelism);
+		builder.append(" elapsed: ").append(String.format("%.3f", elapsedNanos / 1e9)).append(" s");
+		builder.append(" rate: ").append(String.format("%.1f", getPuzzlesPerSecond())).append(" puzzles/s\n");
+		builder.append("Latency us p50: ").append(micros(latencies.getPercentile(50)));
+		builder.append(" p90: ").append(micros(latencies.getPercentile(90)));
+		builder.append(" p99: ").append(micros(latencies.getPercentile(99)));
+		builder.append(" p99.9: ").append(micros(latencies.getPercentile(99.9)));
+		builder.append(" max: ").append(micros(latencies.getMax()));
+		return builder.toString();
+	}
+
+	private static String micros(long nanos) {
+		return String.format("%.1f", nanos / 1e3);
+	}
+}
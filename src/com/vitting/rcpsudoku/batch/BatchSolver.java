@@ -0,0 +1,311 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.batch;
+
+import com.vitting.rcpsudoku.jfc.utils.Logger;
+import com.vitting.rcpsudoku.model.BoardArchive;
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.IRule;
+import com.vitting.rcpsudoku.model.IRuleExtension;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.PuzzleReader;
+import com.vitting.rcpsudoku.model.SolveContext;
+import com.vitting.rcpsudoku.model.SudokuBase;
+import com.vitting.rcpsudoku.model.SudokuException;
+import com.vitting.rcpsudoku.model.VerifyGame;
+import com.vitting.rcpsudoku.rules.RuleRunner;
+import com.vitting.rcpsudoku.rules.cache.SolutionCache;
+import com.vitting.rcpsudoku.rules.dlx.DlxRule;
+import com.vitting.rcpsudoku.rules.rule4.Rule4;
+import com.vitting.rcpsudoku.rules.sat.SatRule;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Solve a collection of puzzles on all cores
+ * <br>
+ * The puzzles are fanned out over a ForkJoinPool. Each worker thread keeps
+ * its own SudokuBase and RuleRunner and runs the rules followed by the
+ * Rule 4 search, exactly like the Solve action in the GUI, or by another
+ * search such as DlxRule. Each puzzle can get a time and node budget, a
+ * puzzle that runs out of it is counted as exceeded.
+ */
+public class BatchSolver {
+
+	// Batch runs do not trace the search
+	private static final Logger QUIET = message -> {
+	};
+
+	private final int parallelism;
+
+	// Creates the search for each worker
+	private final Supplier<IRuleExtension> searchFactory;
+
+	// Budget of each puzzle, see SolveContext
+	private final long timeoutMillis;
+
+	private final long maxNodes;
+
+	// Shared by the workers, null if not used
+	private SolutionCache cache;
+
+	/**
+	 * Constructor, one worker per available processor using Rule 4
+	 */
+	public BatchSolver() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor, using Rule 4
+	 *
+	 * @param parallelism int - the number of worker threads
+	 */
+	public BatchSolver(int parallelism) {
+		this(parallelism, () -> new Rule4(QUIET));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param parallelism int - the number of worker threads
+	 * @param searchFactory Supplier - creates the search run after the rules, one per worker
+	 */
+	public BatchSolver(int parallelism, Supplier<IRuleExtension> searchFactory) {
+		this(parallelism, searchFactory, SolveContext.NO_LIMIT, SolveContext.NO_LIMIT);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param parallelism int - the number of worker threads
+	 * @param searchFactory Supplier - creates the search run after the rules, one per worker
+	 * @param timeoutMillis long - time allowed for each puzzle, or SolveContext.NO_LIMIT
+	 * @param maxNodes long - search nodes allowed for each puzzle, or SolveContext.NO_LIMIT
+	 */
+	public BatchSolver(int parallelism, Supplier<IRuleExtension> searchFactory,
+			long timeoutMillis, long maxNodes) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		}
+		this.parallelism = parallelism;
+		this.searchFactory = searchFactory;
+		this.timeoutMillis = timeoutMillis;
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * Answer repeated and isomorphic puzzles from a cache
+	 *
+	 * @param cache SolutionCache - shared by all workers, null to solve every puzzle
+	 */
+	public void setSolutionCache(SolutionCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Solve all puzzles in the stream
+	 *
+	 * @param puzzles Stream of int[81] candidate masks, see parse(),
+	 *                a null element counts as an invalid puzzle
+	 * @return BatchReport - the counts and latencies of the run
+	 * @throws SudokuException if the batch is interrupted or a worker fails
+	 */
+	public BatchReport solve(Stream<int[]> puzzles) throws SudokuException {
+		ConcurrentLinkedQueue<Worker> workers = new ConcurrentLinkedQueue<>();
+		ThreadLocal<Worker> localWorker = ThreadLocal.withInitial(() -> {
+			Worker worker = new Worker(searchFactory.get(), cache, timeoutMillis, maxNodes);
+			workers.add(worker);
+			return worker;
+		});
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		long start = System.nanoTime();
+		try {
+			pool.submit(() -> puzzles.parallel().forEach(
+					puzzle -> localWorker.get().solve(puzzle))).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SudokuException("Batch solve interrupted", e);
+		} catch (ExecutionException e) {
+			throw new SudokuException("Batch solve failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		long elapsed = System.nanoTime() - start;
+
+		// Merge the worker results
+		long solved = 0;
+		long unsolved = 0;
+		long invalid = 0;
+		long exceeded = 0;
+		LatencyHistogram latencies = new LatencyHistogram();
+		for (Worker worker : workers) {
+			solved += worker.solved;
+			unsolved += worker.unsolved;
+			invalid += worker.invalid;
+			exceeded += worker.exceeded;
+			latencies.merge(worker.latencies);
+		}
+		return new BatchReport(solved, unsolved, invalid, exceeded, elapsed, parallelism, latencies);
+	}
+
+	/**
+	 * Convert a puzzle in line format to candidate masks
+	 * <br>
+	 * The first 81 characters are the cells row by row, 1 - 9 is a given
+	 * value and 0, '.', '-' or '*' is an empty cell.
+	 *
+	 * @param line CharSequence - the puzzle
+	 * @return int[81] - candidate masks, null if the line is not a puzzle
+	 */
+	public static int[] parse(CharSequence line) {
+		if (line.length() < MGrid.SIZE) {
+			return null;
+		}
+		int[] masks = new int[MGrid.SIZE];
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			char c = line.charAt(i);
+			if (c >= '1' && c <= '9') {
+				masks[i] = Candidates.bit(c - '1');
+			} else if (c == '0' || c == '.' || c == '-' || c == '*') {
+				masks[i] = Candidates.ALL;
+			} else {
+				return null;
+			}
+		}
+		return masks;
+	}
+
+	/**
+	 * Solve a puzzle file, one puzzle per line, or all boards of an archive
+	 * <br>
+	 * Usage: BatchSolver file [threads] [rule4|dlx|sat] [timeoutMillis] [cacheSize]
+	 *
+	 * @param args String[]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: BatchSolver file [threads] [rule4|dlx|sat] [timeoutMillis] [cacheSize]");
+			System.exit(2);
+		}
+		Path file = Paths.get(args[0]);
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		Supplier<IRuleExtension> search = () -> new Rule4(QUIET);
+		if (args.length > 2 && args[2].equals("dlx")) {
+			search = () -> new DlxRule(QUIET);
+		} else if (args.length > 2 && args[2].equals("sat")) {
+			search = () -> new SatRule(QUIET);
+		}
+		long timeout = args.length > 3 ? Long.parseLong(args[3]) : SolveContext.NO_LIMIT;
+		BatchSolver solver = new BatchSolver(threads, search, timeout, SolveContext.NO_LIMIT);
+		SolutionCache cache = args.length > 4 ? new SolutionCache(Integer.parseInt(args[4])) : null;
+		solver.setSolutionCache(cache);
+		try {
+			BatchReport report;
+			if (BoardArchive.isArchive(file.toFile())) {
+				try (BoardArchive archive = new BoardArchive(file.toFile())) {
+					report = solver.solve(archive.stream(true));
+				}
+			} else {
+				try (PuzzleReader reader = new PuzzleReader(file)) {
+					report = solver.solve(reader.stream(true));
+				}
+			}
+			System.out.println(report);
+			if (cache != null) {
+				System.out.println(cache);
+			}
+		} catch (IOException | SudokuException e) {
+			System.err.println("Batch solve failed: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * The board, rules and counters owned by one worker thread
+	 */
+	private static class Worker {
+
+		private final SudokuBase base = new SudokuBase();
+
+		private final RuleRunner runner;
+
+		private final VerifyGame verify = new VerifyGame();
+
+		private final LatencyHistogram latencies = new LatencyHistogram();
+
+		private long solved;
+
+		private long unsolved;
+
+		private long invalid;
+
+		private long exceeded;
+
+		private final long timeoutMillis;
+
+		private final long maxNodes;
+
+		Worker(IRuleExtension search, SolutionCache cache, long timeoutMillis, long maxNodes) {
+			runner = cache == null ? new RuleRunner(QUIET, search) : new RuleRunner(QUIET, search, cache);
+			this.timeoutMillis = timeoutMillis;
+			this.maxNodes = maxNodes;
+		}
+
+		void solve(int[] puzzle) {
+			long start = System.nanoTime();
+			int result = puzzle == null ? IRule.RULE_NOT_POSSIBLE : solveBoard(puzzle);
+			latencies.record(System.nanoTime() - start);
+			switch (result) {
+				case IRule.RULE_GAME_COMPLETE:
+					solved++;
+					break;
+				case IRule.RULE_NOT_POSSIBLE:
+					invalid++;
+					break;
+				case IRule.RULE_BUDGET_EXCEEDED:
+					exceeded++;
+					break;
+				default:
+					unsolved++;
+			}
+		}
+
+		private int solveBoard(int[] puzzle) {
+			try {
+				base.loadMasks(puzzle);
+				int result = verify.verifyAll(base, true);
+				if (result != IRule.RULE_NO_CHANGE) {
+					// Conflicting givens or nothing left to solve
+					return result;
+				}
+				result = runner.run(base, new SolveContext(timeoutMillis, maxNodes));
+				if (result == IRule.RULE_NOT_POSSIBLE || result == IRule.RULE_BUDGET_EXCEEDED) {
+					return result;
+				}
+				return verify.verifyAll(base, true);
+			} catch (SudokuException e) {
+				return IRule.RULE_NOT_POSSIBLE;
+			}
+		}
+	}
+}
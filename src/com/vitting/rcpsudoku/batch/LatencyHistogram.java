@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.batch;
+
+/**
+ * Fixed size histogram of latencies in nanoseconds
+ * <br>
+ * Each power of two is split in 32 buckets, so a percentile is reported
+ * within about 3% of the recorded value. Recording never allocates, a
+ * histogram is not thread safe and is meant to be used by one worker and
+ * merged afterwards.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 5;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+
+	private long total;
+
+	private long max;
+
+	/**
+	 * Record a single latency
+	 *
+	 * @param nanos long - the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts[bucket(nanos)]++;
+		total++;
+		if (nanos > max) {
+			max = nanos;
+		}
+	}
+
+	/**
+	 * Add all recorded values from other to this histogram
+	 *
+	 * @param other LatencyHistogram
+	 */
+	public void merge(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] += other.counts[i];
+		}
+		total += other.total;
+		if (other.max > max) {
+			max = other.max;
+		}
+	}
+
+	/**
+	 * @return long - the number of recorded values
+	 */
+	public long getCount() {
+		return total;
+	}
+
+	/**
+	 * @return long - the largest recorded value in nanoseconds
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @param percentile double - the percentile (0 - 100)
+	 * @return long - the latency in nanoseconds at or below which the
+	 *         percentile of the recorded values fall, 0 if nothing is recorded
+	 */
+	public long getPercentile(double percentile) {
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile / 100.0 * total);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max);
+			}
+		}
+		return max;
+	}
+
+	// Bucket index, values below SUB_BUCKETS are exact
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	// Highest value falling into the bucket
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long sub = bucket % SUB_BUCKETS + SUB_BUCKETS;
+		return ((sub + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.generator;
+
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SudokuBase;
+import com.vitting.rcpsudoku.model.SudokuDocument;
+import com.vitting.rcpsudoku.model.SudokuException;
+import com.vitting.rcpsudoku.rules.count.SolutionCounter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Generate puzzles with a unique solution
+ * <br>
+ * A puzzle starts from a random full grid. The orbits of the symmetry are
+ * removed in random order, an orbit whose removal leaves more than one
+ * solution is put back, see SolutionCounter. Removing stops at a clue count
+ * drawn from the range, a puzzle that cannot get down to the maximum is
+ * thrown away and a new grid is tried.
+ * <br>
+ * Puzzle number i of a run is generated from its own random sequence derived
+ * from the seed and i, so a run gives the same puzzles for the same seed on
+ * any number of threads.
+ */
+public class PuzzleGenerator {
+
+	/** Fewest clues of a unique puzzle */
+	public static final int MIN_CLUES = 17;
+
+	// Most clues when not given on the command line
+	private static final int DEFAULT_MAX_CLUES = 30;
+
+	// New grids tried for one puzzle before giving up
+	private static final int MAX_ATTEMPTS = 1000;
+
+	// Spreads the puzzle numbers over the seeds
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private final Symmetry symmetry;
+
+	private final int minClues;
+
+	private final int maxClues;
+
+	private final int parallelism;
+
+	/**
+	 * Constructor, one worker per available processor
+	 *
+	 * @param symmetry Symmetry - the symmetry of the givens
+	 * @param minClues int - fewest clues, at least MIN_CLUES
+	 * @param maxClues int - most clues, at least minClues and at most 81
+	 */
+	public PuzzleGenerator(Symmetry symmetry, int minClues, int maxClues) {
+		this(symmetry, minClues, maxClues, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param symmetry Symmetry - the symmetry of the givens
+	 * @param minClues int - fewest clues, at least MIN_CLUES
+	 * @param maxClues int - most clues, at least minClues and at most 81
+	 * @param parallelism int - the number of worker threads
+	 */
+	public PuzzleGenerator(Symmetry symmetry, int minClues, int maxClues, int parallelism) {
+		if (minClues < MIN_CLUES || maxClues < minClues || maxClues > MGrid.SIZE) {
+			throw new IllegalArgumentException("Invalid clue range: " + minClues + " - " + maxClues);
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+		}
+		this.symmetry = symmetry;
+		this.minClues = minClues;
+		this.maxClues = maxClues;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Generate one puzzle on the calling thread
+	 *
+	 * @param seed long - the seed of the random sequence
+	 * @return int[81] - candidate masks, a single candidate for a given and
+	 *         Candidates.ALL for an empty cell
+	 * @throws SudokuException if no puzzle in the clue range is found
+	 */
+	public int[] generate(long seed) throws SudokuException {
+		int[] puzzle = new Worker().generate(new SplittableRandom(seed));
+		if (puzzle == null) {
+			throw new SudokuException(noPuzzle());
+		}
+		return puzzle;
+	}
+
+	/**
+	 * Generate puzzles on all workers
+	 * <br>
+	 * The sink is called from the worker threads, in no particular order.
+	 *
+	 * @param count int - the number of puzzles
+	 * @param seed long - the seed of the run
+	 * @param sink ObjIntConsumer - receives each puzzle, see generate(long),
+	 *             and its number 0 - count-1
+	 * @throws SudokuException if the run is interrupted, a puzzle in the clue
+	 *         range is not found or the sink fails
+	 */
+	public void generate(int count, long seed, ObjIntConsumer<int[]> sink) throws SudokuException {
+		ThreadLocal<Worker> localWorker = ThreadLocal.withInitial(Worker::new);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.submit(() -> IntStream.range(0, count).parallel().forEach(index -> {
+				int[] puzzle = localWorker.get().generate(new SplittableRandom(seed + index * GOLDEN_GAMMA));
+				if (puzzle == null) {
+					throw new IllegalStateException(noPuzzle());
+				}
+				sink.accept(puzzle, index);
+			})).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SudokuException("Puzzle generation interrupted", e);
+		} catch (ExecutionException e) {
+			throw new SudokuException("Puzzle generation failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Generate puzzles on all workers
+	 *
+	 * @param count int - the number of puzzles
+	 * @param seed long - the seed of the run
+	 * @return int[count][81] - the puzzles in order of their number
+	 * @throws SudokuException see generate(int, long, ObjIntConsumer)
+	 */
+	public int[][] generate(int count, long seed) throws SudokuException {
+		int[][] puzzles = new int[count][];
+		generate(count, seed, (puzzle, index) -> puzzles[index] = puzzle);
+		return puzzles;
+	}
+
+	/**
+	 * Save a puzzle as a game, the givens as initial values
+	 *
+	 * @param puzzle int[81] - candidate masks, see generate(long)
+	 * @param file File - the .sud file to write
+	 * @throws SudokuException if the file cannot be written
+	 */
+	public static void write(int[] puzzle, File file) throws SudokuException {
+		SudokuBase base = new SudokuBase();
+		base.loadMasks(puzzle);
+		new SudokuDocument(file).save(base);
+	}
+
+	/**
+	 * Convert a puzzle to line format, '.' for an empty cell
+	 *
+	 * @param puzzle int[81] - candidate masks
+	 * @return String - the 81 cells row by row
+	 */
+	public static String toLine(int[] puzzle) {
+		char[] line = new char[MGrid.SIZE];
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			line[i] = Candidates.isSingle(puzzle[i])
+					? (char) ('1' + Candidates.lowest(puzzle[i])) : '.';
+		}
+		return new String(line);
+	}
+
+	/**
+	 * Generate a pool of puzzles, one .sud file per puzzle
+	 * <br>
+	 * Usage: PuzzleGenerator count directory [symmetry] [minClues] [maxClues] [seed] [threads]
+	 *
+	 * @param args String[]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: PuzzleGenerator count directory [none|rotate_180|rotate_90|mirror|diagonal]"
+					+ " [minClues] [maxClues] [seed] [threads]");
+			System.exit(2);
+		}
+		int count = Integer.parseInt(args[0]);
+		File directory = new File(args[1]);
+		Symmetry symmetry = args.length > 2 ? Symmetry.valueOf(args[2].toUpperCase()) : Symmetry.ROTATE_180;
+		int minClues = args.length > 3 ? Integer.parseInt(args[3]) : MIN_CLUES;
+		int maxClues = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_MAX_CLUES;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+		int threads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			System.err.println("Cannot create directory: " + directory);
+			System.exit(1);
+		}
+		int digits = Integer.toString(Math.max(count - 1, 0)).length();
+		String name = "puzzle-%0" + digits + "d.sud";
+		long start = System.nanoTime();
+		try {
+			new PuzzleGenerator(symmetry, minClues, maxClues, threads).generate(count, seed, (puzzle, index) -> {
+				try {
+					write(puzzle, new File(directory, String.format(name, index)));
+				} catch (SudokuException e) {
+					throw new IllegalStateException(e.getMessage(), e);
+				}
+			});
+		} catch (SudokuException e) {
+			System.err.println("Puzzle generation failed: " + e.getMessage());
+			System.exit(1);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println("Puzzles: " + count + " seed: " + seed + " threads: " + threads
+				+ " elapsed: " + String.format("%.3f", seconds) + " s"
+				+ " rate: " + String.format("%.1f", count / seconds) + " puzzles/s");
+	}
+
+	private String noPuzzle() {
+		return "No puzzle with " + symmetry + " symmetry and at most " + maxClues
+				+ " clues after " + MAX_ATTEMPTS + " grids";
+	}
+
+	/**
+	 * The counter and scratch arrays owned by one worker thread
+	 */
+	private class Worker {
+
+		private final SolutionCounter counter = new SolutionCounter();
+
+		private final List<int[]> solutions = new ArrayList<>(1);
+
+		private final int[] masks = new int[MGrid.SIZE];
+
+		private final int[] lines = new int[9];
+
+		private final int[] stacks = new int[9];
+
+		private final int[][] orbits = symmetry.getOrbits().clone();
+
+		int[] generate(SplittableRandom random) {
+			for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+				int[] grid = fullGrid(random);
+				int[] puzzle = removeClues(grid, random);
+				if (puzzle != null) {
+					return puzzle;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * A random full grid
+		 * <br>
+		 * The three blocks on the diagonal share no house, so any filling of
+		 * them can be completed. The completion found by the counter is
+		 * shuffled further by permuting the bands, the rows within a band,
+		 * the stacks and the columns within a stack.
+		 */
+		private int[] fullGrid(SplittableRandom random) {
+			for (int i = 0; i < MGrid.SIZE; i++) {
+				masks[i] = Candidates.ALL;
+			}
+			for (int block = 0; block < 9; block += 4) {
+				shuffle(lines, random);
+				int first = (block / 3) * 27 + (block % 3) * 3;
+				for (int i = 0; i < 9; i++) {
+					masks[first + (i / 3) * 9 + i % 3] = Candidates.bit(lines[i]);
+				}
+			}
+			solutions.clear();
+			counter.count(masks, 1, solutions);
+			int[] solved = solutions.get(0);
+
+			permutation(lines, random);
+			permutation(stacks, random);
+			int[] grid = new int[MGrid.SIZE];
+			for (int row = 0; row < 9; row++) {
+				for (int column = 0; column < 9; column++) {
+					grid[row * 9 + column] = solved[lines[row] * 9 + stacks[column]];
+				}
+			}
+			return grid;
+		}
+
+		/**
+		 * Remove orbits from a full grid while the solution stays unique
+		 *
+		 * @return int[81] - the puzzle, null if it has more than maxClues
+		 */
+		private int[] removeClues(int[] grid, SplittableRandom random) {
+			int[] puzzle = grid.clone();
+			int target = minClues + random.nextInt(maxClues - minClues + 1);
+			int clues = MGrid.SIZE;
+			// From the same order every time, the puzzle only depends on random
+			System.arraycopy(symmetry.getOrbits(), 0, orbits, 0, orbits.length);
+			shuffle(orbits, random);
+			for (int o = 0; o < orbits.length && clues > target; o++) {
+				int[] orbit = orbits[o];
+				if (clues - orbit.length < target) {
+					continue;
+				}
+				for (int cell : orbit) {
+					puzzle[cell] = Candidates.ALL;
+				}
+				if (counter.isUnique(puzzle)) {
+					clues -= orbit.length;
+				} else {
+					for (int cell : orbit) {
+						puzzle[cell] = grid[cell];
+					}
+				}
+			}
+			return clues <= maxClues ? puzzle : null;
+		}
+
+		// A random order of the numbers 0 - 8
+		private void shuffle(int[] values, SplittableRandom random) {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = i;
+			}
+			for (int i = values.length - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int swap = values[i];
+				values[i] = values[j];
+				values[j] = swap;
+			}
+		}
+
+		private void shuffle(int[][] values, SplittableRandom random) {
+			for (int i = values.length - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int[] swap = values[i];
+				values[i] = values[j];
+				values[j] = swap;
+			}
+		}
+
+		// A random order of the 9 lines that keeps the bands together
+		private void permutation(int[] order, SplittableRandom random) {
+			int[] bands = new int[3];
+			int[] within = new int[3];
+			shuffle(bands, random);
+			for (int band = 0; band < 3; band++) {
+				shuffle(within, random);
+				for (int i = 0; i < 3; i++) {
+					order[band * 3 + i] = bands[band] * 3 + within[i];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.generator;
+
+import com.vitting.rcpsudoku.model.MGrid;
+
+/**
+ * Symmetry of the givens of a generated puzzle
+ * <br>
+ * The cells are split into orbits, the cells mapped onto each other by the
+ * symmetry. The generator removes a whole orbit at a time, so the givens
+ * keep the symmetry.
+ */
+public enum Symmetry {
+
+	/** No symmetry, every cell is removed alone */
+	NONE,
+
+	/** Rotation by 180 degrees around the center cell */
+	ROTATE_180,
+
+	/** Rotations by 90, 180 and 270 degrees */
+	ROTATE_90,
+
+	/** Mirror in the middle column */
+	MIRROR,
+
+	/** Mirror in the main diagonal */
+	DIAGONAL;
+
+	// The orbits, filled on first use
+	private int[][] orbits;
+
+	/**
+	 * @return int[][] - the orbits, each the cell indexes of one orbit,
+	 *         together all 81 cells once. Shared, do not change.
+	 */
+	public synchronized int[][] getOrbits() {
+		if (orbits == null) {
+			orbits = buildOrbits();
+		}
+		return orbits;
+	}
+
+	// Cell index of cell after the symmetry
+	private int map(int cell) {
+		int row = cell / 9;
+		int column = cell % 9;
+		switch (this) {
+			case ROTATE_180:
+				return (8 - row) * 9 + (8 - column);
+			case ROTATE_90:
+				return column * 9 + (8 - row);
+			case MIRROR:
+				return row * 9 + (8 - column);
+			case DIAGONAL:
+				return column * 9 + row;
+			default:
+				return cell;
+		}
+	}
+
+	private int[][] buildOrbits() {
+		boolean[] seen = new boolean[MGrid.SIZE];
+		int[][] result = new int[MGrid.SIZE][];
+		int count = 0;
+		int[] orbit = new int[4];
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			if (seen[cell]) {
+				continue;
+			}
+			// Apply the symmetry until back at the cell
+			int size = 0;
+			int next = cell;
+			do {
+				seen[next] = true;
+				orbit[size++] = next;
+				next = map(next);
+			} while (next != cell);
+			int[] cells = new int[size];
+			System.arraycopy(orbit, 0, cells, 0, size);
+			result[count++] = cells;
+		}
+		int[][] orbits = new int[count][];
+		System.arraycopy(result, 0, orbits, 0, count);
+		return orbits;
+	}
+}
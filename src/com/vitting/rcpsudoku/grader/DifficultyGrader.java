@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.grader;
+
+import com.vitting.rcpsudoku.batch.BatchSolver;
+import com.vitting.rcpsudoku.jfc.utils.Logger;
+import com.vitting.rcpsudoku.model.IRule;
+import com.vitting.rcpsudoku.model.IStepListener;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SudokuBase;
+import com.vitting.rcpsudoku.model.SudokuException;
+import com.vitting.rcpsudoku.model.VerifyGame;
+import com.vitting.rcpsudoku.rules.RuleRunner;
+import com.vitting.rcpsudoku.rules.rule4.Rule4;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Grade puzzles by the techniques needed to solve them
+ * <br>
+ * The puzzle is solved by RuleRunner as in the Solve action. The rules run
+ * easiest first, and each step that changes the board is recorded with its
+ * Technique. The candidates it eliminated are found by comparing the cells
+ * in the change journal with a copy of the board. When the rules get stuck,
+ * the values Rule 4 tries are counted as guesses.
+ * <br>
+ * A DifficultyGrader keeps its board and buffers between puzzles and is not
+ * thread safe, gradeAll() uses one per worker thread.
+ */
+public class DifficultyGrader {
+
+	// Grading does not trace the search
+	private static final Logger QUIET = message -> {
+	};
+
+	private final SudokuBase base = new SudokuBase();
+
+	private final VerifyGame verify = new VerifyGame();
+
+	// No TranspositionTable, the guesses of a puzzle must not depend on the
+	// puzzles graded before
+	private final Rule4 rule4 = new Rule4(QUIET, null);
+
+	// The board as of the last step
+	private final int[] snapshot = new int[MGrid.SIZE];
+
+	// The steps of the current puzzle, see Grade
+	private int[] stepLog = new int[256];
+
+	private int stepCount;
+
+	private final IStepListener recorder = this::record;
+
+	/**
+	 * Grade a puzzle
+	 *
+	 * @param puzzle int[81] - candidate masks, see BatchSolver.parse(),
+	 *               null for an invalid puzzle
+	 * @return Grade - the steps, score and hardest technique
+	 */
+	public Grade grade(int[] puzzle) {
+		stepCount = 0;
+		long guesses = 0;
+		int result = IRule.RULE_NOT_POSSIBLE;
+		if (puzzle != null) {
+			try {
+				base.loadMasks(puzzle);
+				result = verify.verifyAll(base, true);
+				if (result == IRule.RULE_NO_CHANGE) {
+					base.getGrid().copyTo(snapshot);
+					result = RuleRunner.internalrun(base, recorder);
+					if (result == IRule.RULE_NO_CHANGE) {
+						result = rule4.run(base);
+						guesses = rule4.getNodes();
+					}
+				}
+			} catch (SudokuException e) {
+				result = IRule.RULE_NOT_POSSIBLE;
+			}
+		}
+		return new Grade(result, Arrays.copyOf(stepLog, stepCount), guesses);
+	}
+
+	/**
+	 * Grade puzzles on all cores
+	 *
+	 * @param puzzles List of int[81] - see grade()
+	 * @param parallelism int - the number of worker threads
+	 * @return Grade[] - the grade of each puzzle, in the same order
+	 * @throws SudokuException if grading is interrupted or a worker fails
+	 */
+	public static Grade[] gradeAll(List<int[]> puzzles, int parallelism) throws SudokuException {
+		Grade[] grades = new Grade[puzzles.size()];
+		ThreadLocal<DifficultyGrader> localGrader = ThreadLocal.withInitial(DifficultyGrader::new);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.submit(() -> IntStream.range(0, grades.length).parallel().forEach(
+					i -> grades[i] = localGrader.get().grade(puzzles.get(i)))).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SudokuException("Grading interrupted", e);
+		} catch (ExecutionException e) {
+			throw new SudokuException("Grading failed", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return grades;
+	}
+
+	/**
+	 * Grade a puzzle file, one puzzle per line
+	 * <br>
+	 * Prints each puzzle with its score, hardest technique and the steps and
+	 * eliminations per technique, then the number of puzzles per hardest
+	 * technique.
+	 * <br>
+	 * Usage: DifficultyGrader file [threads]
+	 *
+	 * @param args String[]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Usage: DifficultyGrader file [threads]");
+			System.exit(2);
+		}
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		try {
+			List<String> lines = Files.readAllLines(Paths.get(args[0]), StandardCharsets.ISO_8859_1).stream()
+					.filter(line -> line.length() > 0 && line.charAt(0) != '#')
+					.collect(Collectors.toList());
+			List<int[]> puzzles = lines.stream().map(BatchSolver::parse).collect(Collectors.toList());
+			long start = System.nanoTime();
+			Grade[] grades = gradeAll(puzzles, threads);
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			int[] hardest = new int[Technique.values().length];
+			int unsolved = 0;
+			StringBuilder out = new StringBuilder();
+			for (int i = 0; i < grades.length; i++) {
+				String puzzle = lines.get(i).length() > MGrid.SIZE ? lines.get(i).substring(0, MGrid.SIZE) : lines.get(i);
+				out.append(puzzle).append(' ');
+				if (grades[i].isSolved()) {
+					Technique technique = grades[i].getHardest();
+					if (technique != null) {
+						hardest[technique.ordinal()]++;
+					}
+					out.append(grades[i]);
+				} else {
+					unsolved++;
+					out.append("invalid");
+				}
+				out.append('\n');
+			}
+			System.out.print(out);
+			for (Technique technique : Technique.values()) {
+				System.out.print(technique + ": " + hardest[technique.ordinal()] + " ");
+			}
+			System.out.println("invalid: " + unsolved);
+			System.out.println("Puzzles: " + grades.length + " threads: " + threads
+					+ " elapsed: " + String.format("%.3f", seconds) + " s"
+					+ " rate: " + String.format("%.1f", grades.length / seconds) + " puzzles/s");
+		} catch (IOException | SudokuException e) {
+			System.err.println("Grading failed: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	// Record a step with the candidates removed from the changed cells
+	private void record(IRule rule, SudokuBase stepBase) {
+		MGrid grid = stepBase.getGrid();
+		int eliminated = 0;
+		for (int word = 0; word < 2; word++) {
+			for (long changes = grid.getChanges(word); changes != 0; changes &= changes - 1) {
+				int cell = 64 * word + Long.numberOfTrailingZeros(changes);
+				int mask = grid.get(cell);
+				eliminated += Integer.bitCount(snapshot[cell] & ~mask);
+				snapshot[cell] = mask;
+			}
+		}
+		if (eliminated == 0) {
+			return;
+		}
+		if (stepCount == stepLog.length) {
+			stepLog = Arrays.copyOf(stepLog, 2 * stepCount);
+		}
+		stepLog[stepCount++] = (Technique.of(rule).ordinal() << 16) | Math.min(eliminated, 0xFFFF);
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.grader;
+
+import com.vitting.rcpsudoku.model.IRule;
+
+/**
+ * Result of grading a puzzle, see DifficultyGrader
+ * <br>
+ * The steps of the logical solve are kept in order, each with its technique
+ * and the number of candidates it eliminated. The guesses are the values
+ * Rule 4 tried after the techniques got stuck.
+ */
+public class Grade {
+
+	private static final Technique[] TECHNIQUES = Technique.values();
+
+	private final int result;
+
+	// Packed steps, technique ordinal in the high half, eliminations in the low
+	private final int[] stepLog;
+
+	private final int[] steps = new int[TECHNIQUES.length];
+
+	private final int[] eliminations = new int[TECHNIQUES.length];
+
+	/**
+	 * Constructor
+	 *
+	 * @param result int - one of {RULE_GAME_COMPLETE, RULE_NO_CHANGE, RULE_NOT_POSSIBLE}
+	 * @param stepLog int[] - the packed logical steps
+	 * @param guesses long - the values tried by Rule 4
+	 */
+	Grade(int result, int[] stepLog, long guesses) {
+		this.result = result;
+		this.stepLog = stepLog;
+		for (int i = 0; i < stepLog.length; i++) {
+			int technique = stepLog[i] >>> 16;
+			steps[technique]++;
+			eliminations[technique] += stepLog[i] & 0xFFFF;
+		}
+		steps[Technique.GUESS.ordinal()] = (int) Math.min(guesses, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return int - RULE_GAME_COMPLETE when solved, RULE_NOT_POSSIBLE for an
+	 *         invalid puzzle and RULE_NO_CHANGE when nothing was left to solve
+	 */
+	public int getResult() {
+		return result;
+	}
+
+	/**
+	 * @return boolean - true if the puzzle was solved
+	 */
+	public boolean isSolved() {
+		return result == IRule.RULE_GAME_COMPLETE;
+	}
+
+	/**
+	 * @return int - the number of logical steps
+	 */
+	public int getStepCount() {
+		return stepLog.length;
+	}
+
+	/**
+	 * @param step int - 0 to getStepCount()-1
+	 * @return Technique - the technique of the step
+	 */
+	public Technique getStepTechnique(int step) {
+		return TECHNIQUES[stepLog[step] >>> 16];
+	}
+
+	/**
+	 * @param step int - 0 to getStepCount()-1
+	 * @return int - the candidates eliminated by the step
+	 */
+	public int getStepEliminations(int step) {
+		return stepLog[step] & 0xFFFF;
+	}
+
+	/**
+	 * @param technique Technique
+	 * @return int - the steps of the technique, the guesses for GUESS
+	 */
+	public int getSteps(Technique technique) {
+		return steps[technique.ordinal()];
+	}
+
+	/**
+	 * @param technique Technique
+	 * @return int - the candidates eliminated by the technique, 0 for GUESS
+	 */
+	public int getEliminations(Technique technique) {
+		return eliminations[technique.ordinal()];
+	}
+
+	/**
+	 * @return Technique - the hardest technique used, null if none
+	 */
+	public Technique getHardest() {
+		for (int t = TECHNIQUES.length - 1; t >= 0; t--) {
+			if (steps[t] > 0) {
+				return TECHNIQUES[t];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return long - the sum of the weights of all steps
+	 */
+	public long getScore() {
+		long score = 0;
+		for (int t = 0; t < TECHNIQUES.length; t++) {
+			score += (long) steps[t] * TECHNIQUES[t].getWeight();
+		}
+		return score;
+	}
+
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(getScore()).append(' ').append(getHardest());
+		for (int t = 0; t < TECHNIQUES.length; t++) {
+			if (steps[t] > 0) {
+				builder.append(' ').append(TECHNIQUES[t]).append(':').append(steps[t]);
+				if (TECHNIQUES[t] != Technique.GUESS) {
+					builder.append('/').append(eliminations[t]);
+				}
+			}
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.grader;
+
+import com.vitting.rcpsudoku.model.IRule;
+import com.vitting.rcpsudoku.rules.FishRule;
+import com.vitting.rcpsudoku.rules.Rule1;
+import com.vitting.rcpsudoku.rules.Rule2;
+import com.vitting.rcpsudoku.rules.SubsetRule;
+import com.vitting.rcpsudoku.rules.rule3.Rule3;
+
+/**
+ * The solving techniques a puzzle is graded by, easiest first
+ * <br>
+ * The weight is what one step of the technique adds to the score.
+ */
+public enum Technique {
+
+	/** Rule 1, the values found removed from a cell until one is left */
+	NAKED_SINGLE(1),
+
+	/** Rule 2, a number with one position left in a house */
+	HIDDEN_SINGLE(2),
+
+	/** Rule 3, pointing and claiming */
+	LOCKED_CANDIDATES(5),
+
+	/** Naked and hidden pairs, triples and quads */
+	SUBSET(10),
+
+	/** X-Wing, Swordfish and Jellyfish */
+	FISH(20),
+
+	/** A value tried by Rule 4 */
+	GUESS(50);
+
+	private final int weight;
+
+	Technique(int weight) {
+		this.weight = weight;
+	}
+
+	/**
+	 * @return int - the score of one step
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	/**
+	 * @param rule IRule - a rule run by RuleRunner
+	 * @return Technique - the technique of the rule
+	 */
+	public static Technique of(IRule rule) {
+		if (rule instanceof Rule1) {
+			return NAKED_SINGLE;
+		}
+		if (rule instanceof Rule2) {
+			return HIDDEN_SINGLE;
+		}
+		if (rule instanceof Rule3) {
+			return LOCKED_CANDIDATES;
+		}
+		if (rule instanceof SubsetRule) {
+			return SUBSET;
+		}
+		if (rule instanceof FishRule) {
+			return FISH;
+		}
+		throw new IllegalArgumentException("No technique for " + rule.getClass().getName());
+	}
+}
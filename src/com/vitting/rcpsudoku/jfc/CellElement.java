@@ -16,7 +16,6 @@ package com.vitting.rcpsudoku.jfc;
 import java.awt.GridLayout;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import java.util.BitSet;
 
 import javax.swing.BorderFactory;
 import javax.swing.JPanel;
@@ -177,10 +176,10 @@ public class CellElement extends JPanel implements MouseListener {
 	}
 
 	/**
-	 * @param BitSet
-	 *            the numbers will be displayed ( 1-9) in a 9 x 9 grid
+	 * @param value
+	 *            candidate mask, the numbers will be displayed ( 1-9) in a 9 x 9 grid
 	 */
-	private void setInputFields(BitSet value) {
+	private void setInputFields(int value) {
 		removeAll();
 		setLayout(new GridLayout(3, 3));
 		InputElement[] inputElements = new InputElement[9];
@@ -193,7 +192,7 @@ public class CellElement extends JPanel implements MouseListener {
 			iElement.setForeground(foregroundColor);
 			iElement.setBorder(BorderFactory.createEmptyBorder(0, 0, 0, 0));
 			iElement.setFocusable(false);
-			iElement.set(value.get(x));
+			iElement.set(Candidates.contains(value, x));
 		}
 	}
 
@@ -329,7 +328,7 @@ public class CellElement extends JPanel implements MouseListener {
 			setValueInternal(modelCell.getIntValue());
 		} else {
 			setStringColors();
-			setInputFields(modelCell.getValue());
+			setInputFields(modelCell.getMask());
 		}
 		repaint();
 	}
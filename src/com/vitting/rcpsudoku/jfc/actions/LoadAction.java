@@ -20,10 +20,12 @@ import java.io.IOException;
 
 import javax.swing.JFileChooser;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileFilter;
 
 import com.vitting.rcpsudoku.jfc.MainWindow;
 import com.vitting.rcpsudoku.jfc.ModelDirtyWarning;
+import com.vitting.rcpsudoku.model.BoardArchive;
 import com.vitting.rcpsudoku.model.SudokuBase;
 import com.vitting.rcpsudoku.model.SudokuDocument;
 import com.vitting.rcpsudoku.model.SudokuException;
@@ -90,7 +92,9 @@ public class LoadAction extends JMenuItem implements ActionListener, IAction{
 				int i = s.lastIndexOf('.');
 
 				if (i > 0 && i < s.length() - 1) {
-					if (s.substring(i + 1).equalsIgnoreCase("sud")) {
+					String extension = s.substring(i + 1);
+					if (extension.equalsIgnoreCase("sud")
+							|| extension.equalsIgnoreCase(BoardArchive.EXTENSION)) {
 						return true;
 					}
 				}
@@ -98,7 +102,7 @@ public class LoadAction extends JMenuItem implements ActionListener, IAction{
 			}
 
 			public String getDescription() {
-				return "Sudoku saved game";
+				return "Sudoku saved game or archive";
 			}
 
 		});
@@ -107,6 +111,10 @@ public class LoadAction extends JMenuItem implements ActionListener, IAction{
 			return;
 		}
 		File savefile = fileChooser.getSelectedFile();
+		if (BoardArchive.isArchive(savefile)) {
+			loadFromArchive(savefile);
+			return;
+		}
 		window.persistence.setSaveFile(savefile);
 
 		// Set the window tittle
@@ -136,6 +144,56 @@ public class LoadAction extends JMenuItem implements ActionListener, IAction{
 		window.refresh();
 	}
 	
+	/**
+	 * Load one game of an archive, the user selects it by number
+	 *
+	 * @param archiveFile File - the archive
+	 */
+	private void loadFromArchive(File archiveFile) {
+		try (BoardArchive archive = new BoardArchive(archiveFile)) {
+			if (archive.getCount() == 0) {
+				window.setMessage("The archive holds no games");
+				return;
+			}
+			String answer = JOptionPane.showInputDialog(window,
+					"Game number (1 - " + archive.getCount() + ")", "1");
+			if (answer == null) {
+				return;
+			}
+			int number;
+			try {
+				number = Integer.parseInt(answer.trim());
+			} catch (NumberFormatException e) {
+				number = 0;
+			}
+			if (number < 1 || number > archive.getCount()) {
+				window.setMessage(new SudokuException(
+						"No game " + answer.trim() + " in the archive",
+						SudokuException.SEVERITY_INFORMATION,
+						SudokuException.DISPOSITION_RETRY));
+				return;
+			}
+			window.persistence.setSaveFile(archiveFile);
+			String shortname = archiveFile.getName().substring(0, archiveFile.getName().length()
+					- BoardArchive.EXTENSION.length() - 1) + " #" + number;
+			window.setTitle(MainWindow.windowTitle + " - " + shortname);
+			window.persistence.save();
+			window.setEditMode(false);
+			archive.load(number - 1, base);
+			base.setModelDirty(false);
+			base.setModelLoadedFromFilesystem(true);
+			window.setMessage("Game " + shortname + " loaded");
+			window.refresh();
+		} catch (IOException e) {
+			window.setMessage(new SudokuException(
+					"Failed to load game", e,
+				SudokuException.SEVERITY_ERROR,
+				SudokuException.DISPOSITION_RETRY));
+		} catch (SudokuException e) {
+			window.setMessage("Failed to load game", e);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see com.vitting.rcpsudoku.jfc.actions.IAction#controlEnabled()
 	 */
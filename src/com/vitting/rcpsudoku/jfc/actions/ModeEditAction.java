@@ -19,6 +19,7 @@ import java.awt.event.ActionListener;
 import javax.swing.JCheckBoxMenuItem;
 
 import com.vitting.rcpsudoku.jfc.MainWindow;
+import com.vitting.rcpsudoku.model.SudokuBase;
 import com.vitting.rcpsudoku.model.SudokuException;
 import com.vitting.rcpsudoku.model.VerifyGame;
 
@@ -52,7 +53,7 @@ public class ModeEditAction extends JCheckBoxMenuItem implements ActionListener,
 
 		try {
 			//Verify the game first
-			new VerifyGame().verifyAll(false);
+			new VerifyGame().verifyAll(SudokuBase.getSingleInstance(), false);
 		} catch (SudokuException e1) {
 			window.setMessage(e1);
 			return;
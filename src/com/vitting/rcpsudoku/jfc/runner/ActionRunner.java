@@ -17,6 +17,8 @@ import com.vitting.rcpsudoku.jfc.CellElement;
 import com.vitting.rcpsudoku.jfc.MainWindow;
 import com.vitting.rcpsudoku.jfc.utils.Logger;
 import com.vitting.rcpsudoku.model.IRule;
+import com.vitting.rcpsudoku.model.SolveContext;
+import com.vitting.rcpsudoku.model.SudokuBase;
 import com.vitting.rcpsudoku.model.SudokuException;
 import com.vitting.rcpsudoku.model.VerifyGame;
 import com.vitting.rcpsudoku.model.VerifyGameComplete;
@@ -30,10 +32,13 @@ public class ActionRunner extends JMenu {
     public static final String MESSAGE_NO_SOLUTION = "No possible solution";
     public static final String MESSAGE_NO_SOLUTION_WITH_HINT = "No solution found, try manual input and run solve again";
     public static final String MESSAGE_OK = "Ok so far";
+    public static final String MESSAGE_BUDGET_EXCEEDED = "Solve stopped, no solution found in time";
     public static final String MESSAGE_BLANK = "";
     private static final String TEXT_ACTION = "action";
     private static final String TEXT_SOLVE = "action";
     private static final String TEXT_VERIFY = "action";
+    // The solve runs on the event thread, give up rather than freeze the window
+    private static final long SOLVE_TIMEOUT_MILLIS = 10000;
     private Logger logger;
 
     /**
@@ -48,6 +53,8 @@ public class ActionRunner extends JMenu {
 
     private CellElement[][] cellElements;
 
+    private SudokuBase base = SudokuBase.getSingleInstance();
+
     /**
      * Construct the ActionRunner
      *
@@ -88,14 +95,14 @@ public class ActionRunner extends JMenu {
                 // Clear any messages
                 mainWindow.setMessage(MESSAGE_BLANK); // Clear the message field
                 // Check game for validity, in verbose mode
-                if (verify.verifyAll(false) == IRule.RULE_GAME_COMPLETE) {
+                if (verify.verifyAll(base, false) == IRule.RULE_GAME_COMPLETE) {
                     // Game already complete,do not run
                     mainWindow.gameComplete();
                     return;
                 }
 
                 RuleRunner runner = new RuleRunner(logger);
-                int result = runner.run();
+                int result = runner.run(base, new SolveContext(SOLVE_TIMEOUT_MILLIS, SolveContext.NO_LIMIT));
                 // Refresh the cells
                 for (int x = 0; x < 9; x++) {
                     for (int y = 0; y < 9; y++) {
@@ -107,8 +114,12 @@ public class ActionRunner extends JMenu {
                     mainWindow.setMessage(MESSAGE_NO_SOLUTION);
                     return;
                 }
+                if (result == IRule.RULE_BUDGET_EXCEEDED) {
+                    mainWindow.setMessage(MESSAGE_BUDGET_EXCEEDED);
+                    return;
+                }
 
-                switch (verify.verifyAll(true)) {
+                switch (verify.verifyAll(base, true)) {
                     case IRule.RULE_GAME_COMPLETE:
                         mainWindow.gameComplete();
                         break;
@@ -133,8 +144,8 @@ public class ActionRunner extends JMenu {
             // Call VerifyGame()
             try {
                 VerifyGame verify = new VerifyGame();
-                verify.verifyAll(false);
-                boolean result = verifyGameComplete.verifyAll() == IRule.RULE_GAME_COMPLETE;
+                verify.verifyAll(base, false);
+                boolean result = verifyGameComplete.verifyAll(base) == IRule.RULE_GAME_COMPLETE;
                 if (result) {
                     mainWindow.gameComplete();
                 } else {
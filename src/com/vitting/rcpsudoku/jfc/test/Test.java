@@ -65,7 +65,7 @@ public class Test extends JMenu {
 
 	// Run Rules 1 - 3
 	try {
-		int result = new RuleRunner(DebugLogger.getInstance(config)).run();
+		int result = new RuleRunner(DebugLogger.getInstance(config)).run(base);
 //	    { // DEBUG -- Result rules 1 - 3 was
 //		System.out.println("Result rules 1 - 3 was: " + result);
 //	    }
@@ -76,13 +76,13 @@ public class Test extends JMenu {
 				// Call VerifyGame()
 				try {
 					VerifyGame verify = new VerifyGame();
-					verify.verifyAll(false);
+					verify.verifyAll(base, false);
 				} catch (SudokuException e1) {
 					window.setMessage(e1);
 				}
 
 				Rule4 rule4 = new Rule4(DebugLogger.getInstance(config));
-				if (rule4.run() == IRule.RULE_GAME_COMPLETE) {
+				if (rule4.run(base) == IRule.RULE_GAME_COMPLETE) {
 					window.gameComplete();
 					return;
 				}
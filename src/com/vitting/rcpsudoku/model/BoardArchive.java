@@ -0,0 +1,522 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An archive of many boards with random access by ordinal
+ * <br>
+ * The archive starts with a HEADER_SIZE byte header, the magic number, the
+ * format version, the record size and the position of the footer. The rest
+ * of the file is slots of RECORD_SIZE bytes, each holding the BoardRecord of
+ * a board or a part of a footer. The footer is the number of boards, the
+ * magic number again and the index, the offset of each record as a long,
+ * padded to whole slots. The index is memory mapped when the archive is
+ * opened, so any board is found with one positional read.
+ * <br>
+ * An archive is only appended to. A Writer on an existing archive writes its
+ * boards after the current footer, then the new footer, and only then moves
+ * the footer position in the header. Until that the old footer is still the
+ * one read, so an append that is not completed loses none of the boards
+ * stored before. The footers of earlier appends stay in the file until it
+ * is compacted.
+ * <br>
+ * Usage: BoardArchive append archive file ... | BoardArchive extract archive ordinal file.sud
+ *        | BoardArchive compact archive
+ */
+public final class BoardArchive implements Closeable {
+
+	/** The file extension of an archive */
+	public static final String EXTENSION = "sda";
+
+	/** The first 4 bytes of an archive and of each footer, "RSDA" */
+	public static final int MAGIC = 0x52534441;
+
+	/** The current format version */
+	public static final short CURRENT_VERSION = 1;
+
+	/** Bytes before the first slot */
+	public static final int HEADER_SIZE = 16;
+
+	// Where the header holds the position of the footer, 0 before the first close
+	private static final int FOOTER_POINTER = 8;
+
+	// Bytes of a footer before the index
+	private static final int FOOTER_SIZE = 8;
+
+	// Bytes of an index entry
+	private static final int OFFSET_SIZE = Long.BYTES;
+
+	// Records written at a time
+	private static final int BUFFER_RECORDS = 640;
+
+	private final FileChannel channel;
+
+	private final File file;
+
+	private final int count;
+
+	// The end of the records
+	private final long footerPosition;
+
+	private final LongBuffer index;
+
+	/**
+	 * Constructor, opens the archive and maps its index
+	 *
+	 * @param file File - the archive
+	 * @throws IOException if the file cannot be read
+	 * @throws SudokuException if the file is not a closed archive of this version
+	 */
+	public BoardArchive(File file) throws IOException, SudokuException {
+		this.file = file;
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			footerPosition = readFooter(channel, file);
+			count = readCount(channel, footerPosition);
+			index = channel.map(FileChannel.MapMode.READ_ONLY, footerPosition + FOOTER_SIZE,
+					(long) count * OFFSET_SIZE).asLongBuffer();
+		} catch (IOException | SudokuException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param file File
+	 * @return boolean - true if the file has the archive extension
+	 */
+	public static boolean isArchive(File file) {
+		return file.getName().toLowerCase().endsWith("." + EXTENSION);
+	}
+
+	/**
+	 * Rewrite an archive with its boards in ordinal order and one footer,
+	 * removing the footers of earlier appends
+	 * <br>
+	 * The archive is written to a temporary file next to it, which then
+	 * replaces it, so the archive is never left half written.
+	 *
+	 * @param file File - the archive
+	 * @throws IOException if the archive cannot be read or replaced
+	 * @throws SudokuException if the file is not a closed archive of this version
+	 */
+	public static void compact(File file) throws IOException, SudokuException {
+		File compacted = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+		int[] masks = new int[MGrid.SIZE];
+		boolean[] initial = new boolean[MGrid.SIZE];
+		try (BoardArchive archive = new BoardArchive(file)) {
+			Files.deleteIfExists(compacted.toPath());
+			try (Writer writer = new Writer(compacted)) {
+				for (int ordinal = 0; ordinal < archive.getCount(); ordinal++) {
+					archive.read(ordinal, masks, initial);
+					writer.write(masks, initial);
+				}
+			}
+		} catch (IOException | SudokuException | RuntimeException e) {
+			Files.deleteIfExists(compacted.toPath());
+			throw e;
+		}
+		Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return int - the number of boards in the archive
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Read one board, safe to call from several threads
+	 *
+	 * @param ordinal int - the board, 0 - getCount() - 1
+	 * @param masks int[81] - receives the candidate masks
+	 * @param initial boolean[81] - receives true for an initial value
+	 * @throws IOException if reading fails
+	 * @throws SudokuException if the index entry is invalid
+	 */
+	public void read(int ordinal, int[] masks, boolean[] initial) throws IOException, SudokuException {
+		BoardRecord.decode(readRecord(ordinal), masks, initial);
+	}
+
+	/**
+	 * Load one board into the base and notify all cells
+	 *
+	 * @param ordinal int - the board, 0 - getCount() - 1
+	 * @param base SudokuBase - receives the board
+	 * @throws SudokuException if the board cannot be read
+	 */
+	public void load(int ordinal, SudokuBase base) throws SudokuException {
+		ByteBuffer record;
+		try {
+			record = readRecord(ordinal);
+		} catch (IOException e) {
+			throw new SudokuException("Failed to read board " + ordinal + " of " + file, e,
+					SudokuException.SEVERITY_ERROR,
+					SudokuException.DISPOSITION_CONTINUE);
+		}
+		base.clear(true);
+		BoardRecord.decode(record, base);
+		base.cellsChanged(true);
+	}
+
+	/**
+	 * @param parallel boolean - true for a parallel stream
+	 * @return Stream - the int[81] candidate masks of all boards in order,
+	 *         as read by PuzzleReader, null for a board that cannot be read
+	 */
+	public Stream<int[]> stream(boolean parallel) {
+		IntStream ordinals = IntStream.range(0, count);
+		return (parallel ? ordinals.parallel() : ordinals).mapToObj(ordinal -> {
+			int[] masks = new int[MGrid.SIZE];
+			try {
+				read(ordinal, masks, new boolean[MGrid.SIZE]);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (SudokuException e) {
+				return null;
+			}
+			return masks;
+		});
+	}
+
+	/**
+	 * Close the archive, the boards can no longer be read
+	 *
+	 * @throws IOException if closing fails
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Add documents and puzzle files to an archive, extract one board or
+	 * compact an archive
+	 * <br>
+	 * A .sud file is loaded as a document, any other file is read as a
+	 * puzzle file in line format, see PuzzleReader.
+	 * <br>
+	 * Usage: BoardArchive append archive file ... | BoardArchive extract archive ordinal file.sud
+	 *        | BoardArchive compact archive
+	 *
+	 * @param args String[]
+	 */
+	public static void main(String[] args) {
+		try {
+			if (args.length >= 2 && args[0].equals("append")) {
+				try (Writer writer = new Writer(new File(args[1]))) {
+					int before = writer.getCount();
+					long skipped = 0;
+					for (int i = 2; i < args.length; i++) {
+						skipped += append(writer, new File(args[i]));
+					}
+					System.out.println("Appended " + (writer.getCount() - before) + " boards, skipped "
+							+ skipped + ", " + writer.getCount() + " in archive");
+				}
+			} else if (args.length == 4 && args[0].equals("extract")) {
+				SudokuBase base = new SudokuBase();
+				try (BoardArchive archive = new BoardArchive(new File(args[1]))) {
+					archive.load(Integer.parseInt(args[2]), base);
+				}
+				new SudokuDocument(new File(args[3])).save(base);
+			} else if (args.length == 2 && args[0].equals("compact")) {
+				compact(new File(args[1]));
+			} else {
+				System.err.println("Usage: BoardArchive append archive file ... | BoardArchive extract archive ordinal file.sud"
+						+ " | BoardArchive compact archive");
+				System.exit(2);
+			}
+		} catch (IOException | SudokuException | IndexOutOfBoundsException e) {
+			System.err.println("Archive failed: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	// Append a document or the puzzles of a puzzle file, answer the lines skipped
+	private static long append(Writer writer, File source) throws IOException, SudokuException {
+		if (source.getName().toLowerCase().endsWith(".sud")) {
+			SudokuBase base = new SudokuBase();
+			new SudokuDocument(source).load(base);
+			writer.write(base);
+			return 0;
+		}
+		long skipped = 0;
+		boolean[] initial = new boolean[MGrid.SIZE];
+		try (PuzzleReader reader = new PuzzleReader(source.toPath())) {
+			for (int[] masks : (Iterable<int[]>) reader.stream(false)::iterator) {
+				if (masks == null) {
+					skipped++;
+					continue;
+				}
+				for (int i = 0; i < MGrid.SIZE; i++) {
+					initial[i] = Candidates.isSingle(masks[i]);
+				}
+				writer.write(masks, initial);
+			}
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return skipped;
+	}
+
+	// The record of a board, positioned at its first byte
+	private ByteBuffer readRecord(int ordinal) throws IOException, SudokuException {
+		if (ordinal < 0 || ordinal >= count) {
+			throw new IndexOutOfBoundsException("Board " + ordinal + " not in archive of " + count);
+		}
+		// A record fills a slot before the footer
+		long offset = index.get(ordinal);
+		if (offset < HEADER_SIZE || (offset - HEADER_SIZE) % BoardRecord.RECORD_SIZE != 0
+				|| offset > footerPosition - BoardRecord.RECORD_SIZE) {
+			throw invalid("Invalid index entry " + ordinal + " in archive: " + file);
+		}
+		ByteBuffer record = ByteBuffer.allocate(BoardRecord.RECORD_SIZE);
+		readFully(channel, record, offset);
+		record.flip();
+		return record;
+	}
+
+	// Check the header and the footer, answer the position of the footer
+	private static long readFooter(FileChannel channel, File file) throws IOException, SudokuException {
+		long size = channel.size();
+		if (size < HEADER_SIZE) {
+			throw invalid("Not an archive: " + file);
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		header.flip();
+		if (header.getInt() != MAGIC) {
+			throw invalid("Not an archive: " + file);
+		}
+		short version = header.getShort();
+		if (version != CURRENT_VERSION) {
+			throw new SudokuException("Unsupported archive version " + version,
+					SudokuException.SEVERITY_INFORMATION,
+					SudokuException.DISPOSITION_CONTINUE);
+		}
+		if (header.getShort() != BoardRecord.RECORD_SIZE) {
+			throw invalid("Invalid record size in archive: " + file);
+		}
+		long footerPosition = header.getLong();
+		if (footerPosition == 0) {
+			throw invalid("Archive was not closed: " + file);
+		}
+		if (footerPosition < HEADER_SIZE || (footerPosition - HEADER_SIZE) % BoardRecord.RECORD_SIZE != 0
+				|| footerPosition > size - FOOTER_SIZE) {
+			throw invalid("Invalid footer position in archive: " + file);
+		}
+
+		ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+		readFully(channel, footer, footerPosition);
+		footer.flip();
+		int count = footer.getInt();
+		if (footer.getInt() != MAGIC || count < 0 || count > Integer.MAX_VALUE / OFFSET_SIZE
+				|| footerPosition + FOOTER_SIZE + (long) count * OFFSET_SIZE > size) {
+			throw invalid("Invalid index in archive: " + file);
+		}
+		return footerPosition;
+	}
+
+	// The number of boards of a checked footer
+	private static int readCount(FileChannel channel, long footerPosition) throws IOException {
+		ByteBuffer footer = ByteBuffer.allocate(Integer.BYTES);
+		readFully(channel, footer, footerPosition);
+		footer.flip();
+		return footer.getInt();
+	}
+
+	// The first slot at or after position
+	private static long slot(long position) {
+		long slots = (position - HEADER_SIZE + BoardRecord.RECORD_SIZE - 1) / BoardRecord.RECORD_SIZE;
+		return HEADER_SIZE + slots * BoardRecord.RECORD_SIZE;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+		while (target.hasRemaining()) {
+			if (channel.read(target, position + target.position()) < 0) {
+				throw new IOException("Unexpected end of archive");
+			}
+		}
+	}
+
+	private static SudokuException invalid(String message) {
+		return new SudokuException(message,
+				SudokuException.SEVERITY_ERROR,
+				SudokuException.DISPOSITION_CONTINUE);
+	}
+
+	/**
+	 * Append boards to a new or existing archive
+	 * <br>
+	 * The appended boards become part of the archive when the Writer is
+	 * closed, until then the archive holds the boards it had before.
+	 */
+	public static final class Writer implements Closeable {
+
+		private final FileChannel channel;
+
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * BoardRecord.RECORD_SIZE);
+
+		// The file position of the start of buffer
+		private long position;
+
+		private long[] offsets;
+
+		private int count;
+
+		/**
+		 * Constructor, a missing or empty file becomes a new archive
+		 *
+		 * @param file File - the archive
+		 * @throws IOException if the file cannot be opened
+		 * @throws SudokuException if the file is not a closed archive of this version
+		 */
+		public Writer(File file) throws IOException, SudokuException {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+			try {
+				if (channel.size() == 0) {
+					// No footer until the first close
+					ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+					header.putInt(MAGIC).putShort(CURRENT_VERSION).putShort((short) BoardRecord.RECORD_SIZE);
+					header.clear();
+					writeFully(header, 0);
+					position = HEADER_SIZE;
+					offsets = new long[BUFFER_RECORDS];
+				} else {
+					long footerPosition = readFooter(channel, file);
+					count = readCount(channel, footerPosition);
+					offsets = new long[Math.max(count, BUFFER_RECORDS)];
+					ByteBuffer index = ByteBuffer.allocate(count * OFFSET_SIZE);
+					readFully(channel, index, footerPosition + FOOTER_SIZE);
+					index.flip();
+					index.asLongBuffer().get(offsets, 0, count);
+					// After the current footer, anything there is left from an append not closed
+					position = slot(footerPosition + FOOTER_SIZE + (long) count * OFFSET_SIZE);
+				}
+			} catch (IOException | SudokuException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * @param masks int[81] - the candidate masks
+		 * @param initial boolean[81] - true for an initial value
+		 * @throws IOException if writing fails
+		 */
+		public void write(int[] masks, boolean[] initial) throws IOException {
+			prepare();
+			BoardRecord.encode(masks, initial, buffer);
+		}
+
+		/**
+		 * @param base SudokuBase - the board
+		 * @throws IOException if writing fails
+		 */
+		public void write(SudokuBase base) throws IOException {
+			prepare();
+			BoardRecord.encode(base, buffer);
+		}
+
+		/**
+		 * @return int - the number of boards in the archive, including the appended ones
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Write the last boards and the footer, then point the header at the
+		 * footer
+		 *
+		 * @throws IOException if writing fails
+		 */
+		public void close() throws IOException {
+			try {
+				flush();
+				long footerPosition = position;
+				buffer.putInt(count).putInt(MAGIC);
+				for (int i = 0; i < count; i++) {
+					if (buffer.remaining() < OFFSET_SIZE) {
+						flush();
+					}
+					buffer.putLong(offsets[i]);
+				}
+				// Pad to whole slots
+				if (buffer.remaining() < BoardRecord.RECORD_SIZE) {
+					flush();
+				}
+				while (position + buffer.position() != slot(position + buffer.position())) {
+					buffer.put((byte) 0);
+				}
+				flush();
+				channel.truncate(position);
+
+				// The footer must be stored before the header points at it
+				channel.force(false);
+				ByteBuffer pointer = ByteBuffer.allocate(Long.BYTES);
+				pointer.putLong(footerPosition);
+				pointer.flip();
+				writeFully(pointer, FOOTER_POINTER);
+				channel.force(false);
+			} finally {
+				channel.close();
+			}
+		}
+
+		// Make room for the next record and enter it in the index
+		private void prepare() throws IOException {
+			if (count == Integer.MAX_VALUE / OFFSET_SIZE) {
+				throw new IOException("Archive is full");
+			}
+			if (buffer.remaining() < BoardRecord.RECORD_SIZE) {
+				flush();
+			}
+			if (count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			offsets[count++] = position + buffer.position();
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			int written = buffer.remaining();
+			writeFully(buffer, position);
+			position += written;
+			buffer.clear();
+		}
+
+		private void writeFully(ByteBuffer source, long at) throws IOException {
+			while (source.hasRemaining()) {
+				channel.write(source, at + source.position());
+			}
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A binary file of boards, the compact alternative to the XML document
+ * <br>
+ * The file starts with a HEADER_SIZE byte header, the magic number, the
+ * format version, the record size, the number of boards and the CRC32 of
+ * all records. The BoardRecord of each board follows. The header is written
+ * when the Writer is closed, the Reader checks it and the CRC.
+ * <br>
+ * Usage: BoardFile pack target file.sud ... | BoardFile unpack source directory
+ */
+public final class BoardFile {
+
+	/** The first 4 bytes of a board file, "RSDB" */
+	public static final int MAGIC = 0x52534442;
+
+	/** The current format version */
+	public static final short CURRENT_VERSION = 1;
+
+	/** Bytes before the first record */
+	public static final int HEADER_SIZE = 16;
+
+	// Records read or written at a time
+	private static final int BUFFER_RECORDS = 640;
+
+	private BoardFile() {
+		// Static helpers only
+	}
+
+	/**
+	 * Convert XML documents to a board file
+	 *
+	 * @param documents File[] - the .sud files
+	 * @param target File - the board file to write
+	 * @throws IOException if the board file cannot be written
+	 * @throws SudokuException if a document cannot be loaded
+	 */
+	public static void fromDocuments(File[] documents, File target) throws IOException, SudokuException {
+		SudokuBase base = new SudokuBase();
+		try (Writer writer = new Writer(target)) {
+			for (File document : documents) {
+				new SudokuDocument(document).load(base);
+				writer.write(base);
+			}
+		}
+	}
+
+	/**
+	 * Convert a board file to XML documents, board-N.sud for board N
+	 *
+	 * @param source File - the board file
+	 * @param directory File - receives the .sud files
+	 * @return int - the number of documents written
+	 * @throws IOException if the board file cannot be read
+	 * @throws SudokuException if the board file is invalid or a document cannot be saved
+	 */
+	public static int toDocuments(File source, File directory) throws IOException, SudokuException {
+		SudokuBase base = new SudokuBase();
+		try (Reader reader = new Reader(source)) {
+			String name = "board-%0" + Integer.toString(Math.max(reader.getCount() - 1, 0)).length() + "d.sud";
+			int index = 0;
+			while (reader.read(base)) {
+				new SudokuDocument(new File(directory, String.format(name, index++))).save(base);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Convert between XML documents and board files
+	 * <br>
+	 * Usage: BoardFile pack target file.sud ... | BoardFile unpack source directory
+	 *
+	 * @param args String[]
+	 */
+	public static void main(String[] args) {
+		try {
+			if (args.length >= 2 && args[0].equals("pack")) {
+				File[] documents = new File[args.length - 2];
+				for (int i = 0; i < documents.length; i++) {
+					documents[i] = new File(args[i + 2]);
+				}
+				fromDocuments(documents, new File(args[1]));
+				System.out.println("Packed " + documents.length + " boards");
+			} else if (args.length == 3 && args[0].equals("unpack")) {
+				System.out.println("Unpacked " + toDocuments(new File(args[1]), new File(args[2])) + " boards");
+			} else {
+				System.err.println("Usage: BoardFile pack target file.sud ... | BoardFile unpack source directory");
+				System.exit(2);
+			}
+		} catch (IOException | SudokuException e) {
+			System.err.println("Conversion failed: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Write boards to a new board file
+	 */
+	public static final class Writer implements Closeable {
+
+		private final FileChannel channel;
+
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * BoardRecord.RECORD_SIZE);
+
+		private final CRC32 crc = new CRC32();
+
+		private int count;
+
+		/**
+		 * Constructor, an existing file is replaced
+		 *
+		 * @param file File - the board file
+		 * @throws IOException if the file cannot be created
+		 */
+		public Writer(File file) throws IOException {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			channel.position(HEADER_SIZE);
+		}
+
+		/**
+		 * @param masks int[81] - the candidate masks
+		 * @param initial boolean[81] - true for an initial value
+		 * @throws IOException if writing fails
+		 */
+		public void write(int[] masks, boolean[] initial) throws IOException {
+			if (buffer.remaining() < BoardRecord.RECORD_SIZE) {
+				flush();
+			}
+			BoardRecord.encode(masks, initial, buffer);
+			count++;
+		}
+
+		/**
+		 * @param base SudokuBase - the board
+		 * @throws IOException if writing fails
+		 */
+		public void write(SudokuBase base) throws IOException {
+			if (buffer.remaining() < BoardRecord.RECORD_SIZE) {
+				flush();
+			}
+			BoardRecord.encode(base, buffer);
+			count++;
+		}
+
+		/**
+		 * @return int - the number of boards written
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Write the last boards and the header
+		 *
+		 * @throws IOException if writing fails
+		 */
+		public void close() throws IOException {
+			try {
+				flush();
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putShort(CURRENT_VERSION).putShort((short) BoardRecord.RECORD_SIZE)
+						.putInt(count).putInt((int) crc.getValue());
+				header.flip();
+				while (header.hasRemaining()) {
+					channel.write(header, header.position());
+				}
+			} finally {
+				channel.close();
+			}
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			crc.update(buffer.duplicate());
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Read the boards of a board file in order
+	 */
+	public static final class Reader implements Closeable {
+
+		private final FileChannel channel;
+
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * BoardRecord.RECORD_SIZE);
+
+		private final CRC32 crc = new CRC32();
+
+		private final int count;
+
+		private final int expectedCrc;
+
+		private int index;
+
+		/**
+		 * Constructor, checks the header
+		 *
+		 * @param file File - the board file
+		 * @throws IOException if the file cannot be read
+		 * @throws SudokuException if the file is not a board file of this version
+		 */
+		public Reader(File file) throws IOException, SudokuException {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				readFully(header, 0);
+				header.flip();
+				if (header.getInt() != MAGIC) {
+					throw invalid("Not a board file: " + file);
+				}
+				short version = header.getShort();
+				if (version != CURRENT_VERSION) {
+					throw new SudokuException("Unsupported board file version " + version,
+							SudokuException.SEVERITY_INFORMATION,
+							SudokuException.DISPOSITION_CONTINUE);
+				}
+				if (header.getShort() != BoardRecord.RECORD_SIZE) {
+					throw invalid("Invalid record size in board file: " + file);
+				}
+				count = header.getInt();
+				expectedCrc = header.getInt();
+				if (count < 0 || channel.size() != HEADER_SIZE + (long) count * BoardRecord.RECORD_SIZE) {
+					throw invalid("Truncated board file: " + file);
+				}
+			} catch (IOException | SudokuException | RuntimeException e) {
+				channel.close();
+				throw e;
+			}
+			buffer.limit(0);
+		}
+
+		/**
+		 * @return int - the number of boards in the file
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Read the next board, the CRC is checked after the last one
+		 *
+		 * @param masks int[81] - receives the candidate masks
+		 * @param initial boolean[81] - receives true for an initial value
+		 * @return boolean - false if all boards were read
+		 * @throws IOException if reading fails
+		 * @throws SudokuException if the CRC does not match
+		 */
+		public boolean read(int[] masks, boolean[] initial) throws IOException, SudokuException {
+			if (!next()) {
+				return false;
+			}
+			BoardRecord.decode(buffer, masks, initial);
+			return true;
+		}
+
+		/**
+		 * Read the next board into a base, no listeners are notified
+		 *
+		 * @param base SudokuBase - receives the board
+		 * @return boolean - false if all boards were read
+		 * @throws IOException if reading fails
+		 * @throws SudokuException if the CRC does not match
+		 */
+		public boolean read(SudokuBase base) throws IOException, SudokuException {
+			if (!next()) {
+				return false;
+			}
+			BoardRecord.decode(buffer, base);
+			return true;
+		}
+
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		// Make the next record available in buffer
+		private boolean next() throws IOException, SudokuException {
+			if (index == count) {
+				return false;
+			}
+			if (!buffer.hasRemaining()) {
+				int records = Math.min(BUFFER_RECORDS, count - index);
+				buffer.clear();
+				buffer.limit(records * BoardRecord.RECORD_SIZE);
+				readFully(buffer, HEADER_SIZE + (long) index * BoardRecord.RECORD_SIZE);
+				buffer.flip();
+				crc.update(buffer.duplicate());
+				if (index + records == count && (int) crc.getValue() != expectedCrc) {
+					throw invalid("CRC error in board file");
+				}
+			}
+			index++;
+			return true;
+		}
+
+		private void readFully(ByteBuffer target, long position) throws IOException {
+			while (target.hasRemaining()) {
+				if (channel.read(target, position + target.position()) < 0) {
+					throw new IOException("Unexpected end of board file");
+				}
+			}
+		}
+
+		private static SudokuException invalid(String message) {
+			return new SudokuException(message,
+					SudokuException.SEVERITY_ERROR,
+					SudokuException.DISPOSITION_CONTINUE);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The compact binary record of one board
+ * <br>
+ * A record is RECORD_SIZE bytes, the 81 candidate masks of 9 bits each
+ * followed by 81 bits telling which cells are initial values, 810 bits in
+ * all. The bits are packed from the lowest bit of the first byte, the last
+ * 6 bits are 0. Records are read and written at the position of a
+ * ByteBuffer.
+ */
+public final class BoardRecord {
+
+	/** Bytes of a record */
+	public static final int RECORD_SIZE = (MGrid.SIZE * 10 + 7) / 8;
+
+	private BoardRecord() {
+		// Static helpers only
+	}
+
+	/**
+	 * Write the record of a board
+	 *
+	 * @param masks int[81] - the candidate masks
+	 * @param initial boolean[81] - true for an initial value
+	 * @param target ByteBuffer - receives RECORD_SIZE bytes at its position
+	 */
+	public static void encode(int[] masks, boolean[] initial, ByteBuffer target) {
+		long bits = 0;
+		int count = 0;
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			bits |= (long) (masks[i] & Candidates.ALL) << count;
+			count += 9;
+			while (count >= 8) {
+				target.put((byte) bits);
+				bits >>>= 8;
+				count -= 8;
+			}
+		}
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			if (initial[i]) {
+				bits |= 1L << count;
+			}
+			if (++count == 8) {
+				target.put((byte) bits);
+				bits = 0;
+				count = 0;
+			}
+		}
+		target.put((byte) bits);
+	}
+
+	/**
+	 * Read the record of a board
+	 *
+	 * @param source ByteBuffer - RECORD_SIZE bytes at its position
+	 * @param masks int[81] - receives the candidate masks
+	 * @param initial boolean[81] - receives true for an initial value
+	 */
+	public static void decode(ByteBuffer source, int[] masks, boolean[] initial) {
+		long bits = 0;
+		int count = 0;
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			while (count < 9) {
+				bits |= (long) (source.get() & 0xFF) << count;
+				count += 8;
+			}
+			masks[i] = (int) bits & Candidates.ALL;
+			bits >>>= 9;
+			count -= 9;
+		}
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			if (count == 0) {
+				bits = source.get() & 0xFF;
+				count = 8;
+			}
+			initial[i] = (bits & 1) != 0;
+			bits >>>= 1;
+			count--;
+		}
+	}
+
+	/**
+	 * Write the record of a board
+	 *
+	 * @param base SudokuBase - the board
+	 * @param target ByteBuffer - receives RECORD_SIZE bytes at its position
+	 */
+	public static void encode(SudokuBase base, ByteBuffer target) {
+		int[] masks = new int[MGrid.SIZE];
+		boolean[] initial = new boolean[MGrid.SIZE];
+		base.getGrid().copyTo(masks);
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			initial[i] = base.getCell(i).isInitialValue();
+		}
+		encode(masks, initial, target);
+	}
+
+	/**
+	 * Read the record of a board into a base, no listeners are notified
+	 *
+	 * @param source ByteBuffer - RECORD_SIZE bytes at its position
+	 * @param base SudokuBase - receives the board
+	 */
+	public static void decode(ByteBuffer source, SudokuBase base) {
+		int[] masks = new int[MGrid.SIZE];
+		boolean[] initial = new boolean[MGrid.SIZE];
+		decode(source, masks, initial);
+		base.loadMasks(masks);
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			base.getCell(i).setInitialValue(initial[i]);
+		}
+	}
+}
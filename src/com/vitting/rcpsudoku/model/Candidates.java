@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+import java.util.BitSet;
+
+/**
+ * Helpers for 9 bit candidate masks
+ * <br>
+ * Bit n (0 - 8) is set when the number n + 1 is still possible in the cell.
+ * A mask with all bits set is an empty cell, a mask with a single bit set is
+ * a found value and a mask with no bits set is not possible.
+ */
+public final class Candidates {
+
+	/**
+	 * Mask with all 9 candidates set, indicating an empty cell
+	 */
+	public static final int ALL = 0x1FF;
+
+	/**
+	 * Mask with no candidates, indicating a cell without a valid content
+	 */
+	public static final int NONE = 0;
+
+	private Candidates() {
+		// Static helpers only
+	}
+
+	/**
+	 * @param value int - the value (0 - 8)
+	 * @return int - the mask with only value set
+	 */
+	public static int bit(int value) {
+		return 1 << value;
+	}
+
+	/**
+	 * @param mask int - candidate mask
+	 * @return int - the number of candidates in the mask
+	 */
+	public static int count(int mask) {
+		return Integer.bitCount(mask);
+	}
+
+	/**
+	 * @param mask int - candidate mask
+	 * @return int - the lowest value in the mask (0 - 8), -1 if the mask is empty
+	 */
+	public static int lowest(int mask) {
+		return mask == 0 ? -1 : Integer.numberOfTrailingZeros(mask);
+	}
+
+	/**
+	 * @param mask int - candidate mask
+	 * @return int - the mask with the lowest bit removed
+	 */
+	public static int withoutLowest(int mask) {
+		return mask & (mask - 1);
+	}
+
+	/**
+	 * @param mask int - candidate mask
+	 * @return true if exactly one candidate is set
+	 */
+	public static boolean isSingle(int mask) {
+		return mask != 0 && (mask & (mask - 1)) == 0;
+	}
+
+	/**
+	 * @param mask int - candidate mask
+	 * @param value int - the value (0 - 8)
+	 * @return true if value is a candidate in the mask
+	 */
+	public static boolean contains(int mask, int value) {
+		return (mask & (1 << value)) != 0;
+	}
+
+	/**
+	 * @param mask int - candidate mask
+	 * @return BitSet - a new BitSet with the same candidates
+	 */
+	public static BitSet toBitSet(int mask) {
+		BitSet value = new BitSet(9);
+		for (int m = mask; m != 0; m &= m - 1) {
+			value.set(Integer.numberOfTrailingZeros(m));
+		}
+		return value;
+	}
+
+	/**
+	 * @param value BitSet - candidates (0 - 8), higher bits are ignored
+	 * @return int - the candidate mask
+	 */
+	public static int fromBitSet(BitSet value) {
+		int mask = 0;
+		for (int i = value.nextSetBit(0); i >= 0 && i < 9; i = value.nextSetBit(i + 1)) {
+			mask |= 1 << i;
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+/**
+ * Interface for Sudoku Rules working on a whole house (row, column or block)
+ * <br>
+ * The scope tells which kind of houses the rule runs on. RuleRunner runs a
+ * house rule on the houses of the changed cells, run on a single cell the
+ * rule runs on the houses of that cell.
+ */
+public interface IHouseRule extends IRule {
+
+	/** The ints of the scratch passed to runHouse() */
+	public static final int SCRATCH_SIZE = 9 * 9 + 2 * 9;
+
+	/**
+	 * Run the rule on a house
+	 *
+	 * @param base SudokuBase - the game to run on
+	 * @param house int - the house number, see SudokuTopology
+	 * @return int one of {RULE_NO_CHANGE, RULE_CELL_CHANGED, RULE_NOT_POSSIBLE}
+	 */
+	public abstract int runHouse(SudokuBase base, int house) throws SudokuException;
+
+	/**
+	 * Run the rule on a house with working memory owned by the caller
+	 * <br>
+	 * A rule that needs arrays takes them from scratch, so a search running
+	 * the rule at every node does not allocate. Nothing is kept in scratch
+	 * between calls.
+	 *
+	 * @param base SudokuBase - the game to run on
+	 * @param house int - the house number, see SudokuTopology
+	 * @param scratch int[SCRATCH_SIZE] - not used by another thread
+	 * @return int one of {RULE_NO_CHANGE, RULE_CELL_CHANGED, RULE_NOT_POSSIBLE}
+	 */
+	public default int runHouse(SudokuBase base, int house, int[] scratch) throws SudokuException {
+		return runHouse(base, house);
+	}
+
+	/**
+	 * Run the rule on the houses of cell in the scope of the rule
+	 *
+	 * @param base SudokuBase - the game the cell belongs to
+	 * @param cell
+	 * @return int one of {RULE_NO_CHANGE, RULE_CELL_CHANGED, RULE_NOT_POSSIBLE}
+	 */
+	public default int runRule(SudokuBase base, MCell cell) throws SudokuException {
+		int result = RULE_NO_CHANGE;
+		int[] houses = SudokuTopology.houses(cell.getIndex());
+		for (int i = 0; i < houses.length; i++) {
+			// houses() is row, column, block like the scope flags
+			if ((getScope() & (1 << i)) == 0) {
+				continue;
+			}
+			switch (runHouse(base, houses[i])) {
+				case RULE_NOT_POSSIBLE:
+					return RULE_NOT_POSSIBLE;
+				case RULE_CELL_CHANGED:
+					result = RULE_CELL_CHANGED;
+					break;
+				default:
+					// No change
+			}
+		}
+		return result;
+	}
+}
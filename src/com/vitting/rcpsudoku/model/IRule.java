@@ -22,12 +22,40 @@ public interface IRule {
 	public static final int RULE_CELL_CHANGED = 1;
 	public static final int RULE_GAME_COMPLETE = 2;
 	public static final int RULE_NOT_POSSIBLE = 3;
+	/**
+	 * Returned by a search that ran out of time or nodes or was cancelled,
+	 * see SolveContext
+	 */
+	public static final int RULE_BUDGET_EXCEEDED = 4;
+
+	/**
+	 * Scope flags, the houses of the cell read by a rule
+	 */
+	public static final int SCOPE_ROW = 1;
+	public static final int SCOPE_COLUMN = 2;
+	public static final int SCOPE_BLOCK = 4;
+	public static final int SCOPE_ALL = SCOPE_ROW | SCOPE_COLUMN | SCOPE_BLOCK;
+	/**
+	 * Scope flag, the rule reads only the values found in its houses
+	 */
+	public static final int SCOPE_VALUES_ONLY = 8;
+
 	/**
 	 * Run the rule on cell
 	 * 
+	 * @param base SudokuBase - the game the cell belongs to
 	 * @param cell
 	 * @return int one of {RULE_NO_CHANGE, RULE_CELL_CHANGED, RULE_GAME_COMPLETE, RULE_NOT_POSSIBLE}   
 	 */
-	public abstract int runRule(MCell cell) throws SudokuException;
+	public abstract int runRule(SudokuBase base, MCell cell) throws SudokuException;
+
+	/**
+	 * The houses of a cell the rule reads, when a cell changes the rule is
+	 * run again on all cells sharing one of these houses with it
+	 * 
+	 * @return int - a combination of SCOPE_ROW, SCOPE_COLUMN and SCOPE_BLOCK,
+	 *         and SCOPE_VALUES_ONLY when other changes do not matter
+	 */
+	public abstract int getScope();
 	
 }
@@ -20,8 +20,24 @@ public interface IRuleExtension {
 	/**
 	 * Called when the action must run
 	 *  
+	 * @param base SudokuBase - the game to run on
 	 * @return int one of {RULE_NO_CHANGE, RULE_CELL_CHANGED, RULE_GAME_COMPLETE, RULE_NOT_POSSIBLE}   
 	 * @throws SudokuException
 	 */
-	public int run() throws SudokuException;
+	public int run(SudokuBase base) throws SudokuException;
+
+	/**
+	 * Called when the action must run within a budget
+	 * <br>
+	 * The default ignores the budget, a search overrides it to check the
+	 * context and return RULE_BUDGET_EXCEEDED when it runs out.
+	 *
+	 * @param base SudokuBase - the game to run on
+	 * @param context SolveContext - the deadline, node limit and cancel flag
+	 * @return int one of {RULE_NO_CHANGE, RULE_CELL_CHANGED, RULE_GAME_COMPLETE, RULE_NOT_POSSIBLE, RULE_BUDGET_EXCEEDED}
+	 * @throws SudokuException
+	 */
+	public default int run(SudokuBase base, SolveContext context) throws SudokuException {
+		return run(base);
+	}
 }
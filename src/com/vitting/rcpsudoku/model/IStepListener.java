@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+/**
+ * Listener for the steps of a logical solve, see RuleRunner
+ */
+public interface IStepListener {
+	/**
+	 * A rule changed the board
+	 * <br>
+	 * Called before the changes are passed on to the other rules, the change
+	 * journal of the grid holds exactly the cells changed by this step, see
+	 * MGrid.getChanges().
+	 *
+	 * @param rule IRule - the rule run
+	 * @param base SudokuBase - the game it ran on
+	 */
+	public void ruleApplied(IRule rule, SudokuBase base);
+}
@@ -54,7 +54,7 @@ public class MBlocks {
 	
 	/**
 	 * @param block
-	 * @return MCell[] - an array of MCells belonging to the block 
+	 * @return MCell[] - a new array of MCells belonging to the block 
 	 */
 	public MCell[] getCells(int block) {
 		MCell[] cells = new MCell[9];
@@ -73,39 +73,6 @@ public class MBlocks {
 	 * @return int the block number 0 - 8
 	 */
 	int findBlock(int x, int y) {
-		
-		int modifier = 0;
-		switch (x) {
-		case 0:
-		case 1:
-		case 2:
-			// modifier already 0
-			break;
-		case 3:
-		case 4:
-		case 5:
-			modifier = 3;
-			break;
-		case 6:
-		case 7:
-		case 8:
-			modifier = 6;
-			break;
-		}
-		switch (y) {
-		case 0:
-		case 1:
-		case 2:
-			return modifier + 0;
-		case 3:
-		case 4:
-		case 5:
-			return modifier + 1;
-		case 6:
-		case 7:
-		case 8:
-			return modifier + 2;
-		}
-		return 0; // Should never occour
+		return SudokuTopology.block(x, y);
 	}
 }
@@ -26,7 +26,8 @@ public class MCell {
 	// coordinates for this sell
 	private Coordinate coordinate;
 	private int block = 0;
-	private MCellContent content = new MCellContent(this); 
+	private int index;
+	private MCellContent content; 
 	private boolean initialValue;
 	
 	
@@ -35,14 +36,16 @@ public class MCell {
 	 * <br>
 	 * The constructor is not public, MCells cannot be constructed by classes from outside this package
 	 * 
+	 * @param grid MGrid - the grid holding the cell content
 	 * @param row
 	 * @param column
 	 * @param block
 	 */
-	MCell (int row, int column, int block) {
+	MCell (MGrid grid, int row, int column, int block) {
 		coordinate = new Coordinate(row , column);
 		this.block = block;
-		content = new MCellContent(this);
+		index = row * 9 + column;
+		content = new MCellContent(grid, index);
 		initialValue = false;
 	}
 
@@ -82,6 +85,13 @@ public class MCell {
 		return block;
 	}
 
+	/**
+	 * @return the index of the cell in the MGrid ( 0 - 80)
+	 */
+	public int getIndex() {
+		return index;
+	}
+
 	/**
 	 * @return true if initialValue
 	 */
@@ -97,7 +107,21 @@ public class MCell {
 	}
 
 	/**
-	 * @return the value BitSet 
+	 * @return int - the candidate mask, see Candidates
+	 */
+	public int getMask() {
+		return content.getMask();
+	}
+
+	/**
+	 * @param mask int - the new candidate mask, see Candidates
+	 */
+	public void setMask(int mask) {
+		content.setMask(mask);
+	}
+
+	/**
+	 * @return a copy of the value as a BitSet 
 	 */
 	public BitSet getValue() {
 		return content.getValue();
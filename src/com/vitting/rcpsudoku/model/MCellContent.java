@@ -16,75 +16,85 @@ package com.vitting.rcpsudoku.model;
 import java.util.BitSet;
 
 /**
- * MCell holds data information for a Sudoku cell 
+ * MCell holds data information for a Sudoku cell
+ * <br>
+ * The content is a view over the cell's candidate mask in the MGrid
  */
 public class MCellContent {
-	
-	// possible values, if only 1 the result is found
-	private BitSet value;
+
+	// the grid holding the possible values, if only 1 the result is found
+	private final MGrid grid;
+
+	// index of the cell in the grid
+	private final int index;
 
 	/**
-	 * Construct a new empty McellContent
-	 * 
-	 * @param cell MCell - Backward link to the refering MCell
+	 * Construct a new McellContent
+	 * <br>
+	 * The constructor is not public, MCellContent cannot be constructed by classes from outside this package
+	 *
+	 * @param grid MGrid - the grid holding the candidate masks
+	 * @param index int - the cell index in the grid (0 - 80)
 	 */
-	public MCellContent(MCell cell) {
-		value =  new BitSet(9);
-		value.set(0, 9);
+	MCellContent(MGrid grid, int index) {
+		this.grid = grid;
+		this.index = index;
 	}
 
 	/**
-	 * Copy constructor for MCellContent
-	 * <br>
-	 * Copy wll be a deep clone
-	 * 
-	 * @param content MCellContent - the copy clone of MCellContent
+	 * @return int - the candidate mask
 	 */
-	public MCellContent(MCellContent content) {
-		value = (BitSet) content.value.clone();
+	public int getMask() {
+		return grid.get(index);
 	}
 
 	/**
-	 * @return the value BitSet 
+	 * @param mask int - the new candidate mask
+	 */
+	public void setMask(int mask) {
+		grid.set(index, mask);
+	}
+
+	/**
+	 * @return a copy of the value as a BitSet, changes are not reflected in the content
 	 */
 	public BitSet getValue() {
-		return value;
+		return Candidates.toBitSet(grid.get(index));
 	}
 
 	/**
 	 * @return int - the number of the first bit active  (0 - 8)
 	 */
 	public int getIntValue() {
-		return value.nextSetBit(0);
+		return Candidates.lowest(grid.get(index));
 	}
 
 	/**
 	 * @param value BitSet - the new value to insert in the array
 	 */
 	public void setValue(BitSet value) {
-		this.value = value;
+		grid.set(index, Candidates.fromBitSet(value));
 	}
 
 	/**
 	 * @param newValue integer - insert the single integer value in the array (0 - 8)
 	 */
 	public void setValue(int newValue) {
-		value.clear();
-		value.set(newValue);
+		grid.set(index, Candidates.bit(newValue));
 	}
 
 	/**
 	 * @param newValue integer - ADD the  integer value TO the array (0 - 8)
 	 */
 	public void AddValue(int newValue) {
-		value.set(newValue);
+		grid.set(index, grid.get(index) | Candidates.bit(newValue));
 	}
 	/**
 	 * Clearing matching value in the bit array (0 - 8)
 	 * <br>
 	 * If the bit to be cleared is the only one, all bits are set,
 	 * indicating an empty cell
-	 * 
+	 *
 	 * @param toBeCleared int - the value to be cleared
 	 */
 	public void clearValue(int toBeCleared) {
@@ -92,40 +102,40 @@ public class MCellContent {
 			// Ignore invalid values
 			return;
 		}
-		value.clear(toBeCleared);
-		if (value.isEmpty()) {
+		int mask = grid.get(index) & ~Candidates.bit(toBeCleared);
+		if (mask == Candidates.NONE) {
 			// Indicate empty cell
-			value.set(0, 9);
+			mask = Candidates.ALL;
 		}
+		grid.set(index, mask);
 	}
 
-		
+
 	/**
 	 * @return true if single value found
 	 */
 	public boolean isValueFound() {
-		return value.cardinality() == 1;
+		return Candidates.isSingle(grid.get(index));
 	}
 
 	/**
 	 * Set the MCell to empty condition
 	 */
 	public void setEmpty() {
-		value.clear();
-		value.set(0, 9);
+		grid.set(index, Candidates.ALL);
 	}
 
 	/**
 	 * @return true if the cell is empty
 	 */
 	public boolean isEmpty() {
-		return value.cardinality() == 9;
+		return grid.get(index) == Candidates.ALL;
 	}
 
 	/**
 	 * @return true if the cell has a valid content
 	 */
 	public boolean isPossible() {
-		return value.isEmpty() == false;
+		return grid.get(index) != Candidates.NONE;
 	}
 }
@@ -37,22 +37,17 @@ public class MCellStack {
     /**
          * Push the game data onto the stack
          * 
-         * @param cells
-         *                MCell - MCells cotaining tata
+         * @param grid
+         *                MGrid - the candidate masks of the game
          * @return int - the number of saved games on stack
          */
-    public int pushGame(MCell[][] cells) {
+    public int pushGame(MGrid grid) {
 //	{ // DEBUG -- pushing game onto stack
 //	    System.out.println("pushing game onto stack");
 //	}
-	MCellContent[][] stackElement = new MCellContent[9][9];
+	int[] stackElement = new int[MGrid.SIZE];
+	grid.copyTo(stackElement);
 	cellStack.add(stackElement);
-
-	for (int x = 0; x < 9; x++) {
-	    for (int y = 0; y < 9; y++) {
-		stackElement[x][y] = new MCellContent(cells[x][y].getContent());
-	    }
-	}
 //	{ // DEBUG -- Stack size
 //	    System.out.println("Stack size: " + cellStack.size());
 //	}
@@ -63,23 +58,18 @@ public class MCellStack {
          * Pop the game data from the stack <br>
          * Stack empty == NOOP
          * 
-         * @param cells
-         *                MCell - MCells cotaining tata
+         * @param grid
+         *                MGrid - receives the candidate masks of the game
          * @return int - the number of remaining games on stack
          */
-    public int popGame(MCell[][] cells) {
+    public int popGame(MGrid grid) {
 //	{ // DEBUG -- Restoring game from Stack
 //	    System.out.println("Restoring game from Stack");
 //	}
 	if (cellStack.size() > 0) {
-	    MCellContent[][] stackElement = (MCellContent[][]) cellStack
-		    .lastElement();
-	    cellStack.removeElement(cellStack.lastElement());
-	    for (int x = 0; x < 9; x++) {
-		for (int y = 0; y < 9; y++) {
-		    cells[x][y].setValue(stackElement[x][y].getValue());
-		}
-	    }
+	    int[] stackElement = (int[]) cellStack.lastElement();
+	    cellStack.removeElement(stackElement);
+	    grid.copyFrom(stackElement);
 	}
 //	{ // DEBUG -- Stack size
 //	    System.out.println("Stack size: " + cellStack.size());
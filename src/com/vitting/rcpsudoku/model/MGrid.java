@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MGrid (ModelGrid) holds the candidate masks for all 81 cells in a flat array
+ * <br>
+ * The cell index is row * 9 + column. MCell and MCellContent are views over
+ * this array, the rules and solvers may use it directly.
+ * <br>
+ * While the trail is active every change is recorded as (cell, old mask), so
+ * a search can undo back to a mark without copying the board.
+ * <br>
+ * Every change is also noted in the change journal, a set of cell indexes
+ * used by the propagation in RuleRunner to run only the rules whose input
+ * changed.
+ * <br>
+ * The grid keeps a 64 bit Zobrist hash of all candidates, the xor of a fixed
+ * random key for each (cell, candidate) present. It is updated with every
+ * change and undo, so a search can recognize a board it has seen before.
+ * The keys are the same for all grids.
+ */
+public final class MGrid {
+
+	/**
+	 * Number of cells in the grid
+	 */
+	public static final int SIZE = 81;
+
+	// Zobrist keys, for each cell and group of 3 candidates the xor of the
+	// keys of each combination of the group
+	private static final long[] ZOBRIST = new long[SIZE * 3 * 8];
+
+	static {
+		SplittableRandom random = new SplittableRandom(0x5D0C0L);
+		long[] keys = new long[9];
+		for (int index = 0; index < SIZE; index++) {
+			for (int value = 0; value < 9; value++) {
+				keys[value] = random.nextLong();
+			}
+			for (int group = 0; group < 3; group++) {
+				for (int bits = 0; bits < 8; bits++) {
+					long key = 0;
+					for (int bit = 0; bit < 3; bit++) {
+						if ((bits & (1 << bit)) != 0) {
+							key ^= keys[group * 3 + bit];
+						}
+					}
+					ZOBRIST[(index * 3 + group) * 8 + bits] = key;
+				}
+			}
+		}
+	}
+
+	// candidate mask for each cell, see Candidates
+	private final int[] masks = new int[SIZE];
+
+	// Zobrist hash of masks
+	private long hash;
+
+	// undo trail, pairs of (cell index, old mask)
+	private int[] trail = new int[2 * 9 * SIZE];
+
+	private int trailSize = 0;
+
+	private boolean trailActive = false;
+
+	// change journal, bit (index & 63) of word (index >> 6), words 2 and 3
+	// hold the cells that got a single candidate
+	private final long[] changes = new long[4];
+
+	/**
+	 * Construct an empty MGrid
+	 * <br>
+	 * The constructor is not public, a MGrid cannot be constructed by classes from outside this package
+	 */
+	MGrid() {
+		Arrays.fill(masks, Candidates.ALL);
+		for (int i = 0; i < SIZE; i++) {
+			hash ^= zobrist(i, Candidates.ALL);
+		}
+	}
+
+	/**
+	 * @param index int - the cell index (0 - 80)
+	 * @return int - the candidate mask of the cell
+	 */
+	public int get(int index) {
+		return masks[index];
+	}
+
+	/**
+	 * @param index int - the cell index (0 - 80)
+	 * @param mask int - the new candidate mask of the cell
+	 */
+	public void set(int index, int mask) {
+		int old = masks[index];
+		if (old == mask) {
+			return;
+		}
+		if (trailActive) {
+			if (trailSize == trail.length) {
+				// Only when candidates are added during a search
+				trail = Arrays.copyOf(trail, trail.length * 2);
+			}
+			trail[trailSize++] = index;
+			trail[trailSize++] = old;
+		}
+		masks[index] = mask;
+		hash ^= zobrist(index, old ^ mask);
+		changes[index >> 6] |= 1L << index;
+		if ((mask & (mask - 1)) == 0) {
+			changes[2 + (index >> 6)] |= 1L << index;
+		}
+	}
+
+	/**
+	 * @return long - the Zobrist hash of the candidates of all cells
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * Start recording changes on an empty trail
+	 */
+	public void startTrail() {
+		trailSize = 0;
+		trailActive = true;
+	}
+
+	/**
+	 * Stop recording changes and forget the trail
+	 */
+	public void stopTrail() {
+		trailSize = 0;
+		trailActive = false;
+	}
+
+	/**
+	 * @return int - the current trail position, to be passed to undo()
+	 */
+	public int mark() {
+		return trailSize;
+	}
+
+	/**
+	 * Undo all changes recorded after mark
+	 * <br>
+	 * The state restored was seen before, the cells undone are not noted in
+	 * the change journal.
+	 *
+	 * @param mark int - a position returned by mark()
+	 */
+	public void undo(int mark) {
+		while (trailSize > mark) {
+			int old = trail[--trailSize];
+			int index = trail[--trailSize];
+			hash ^= zobrist(index, old ^ masks[index]);
+			masks[index] = old;
+		}
+	}
+
+	/**
+	 * @param word int - 0 for the cells 0 - 63, 1 for the cells 64 - 80,
+	 *             2 and 3 for the same cells when only counting the cells
+	 *             set to a single candidate (or none)
+	 * @return long - the cells changed since clearChanges(), bit (index & 63)
+	 */
+	public long getChanges(int word) {
+		return changes[word];
+	}
+
+	/**
+	 * Empty the change journal
+	 */
+	public void clearChanges() {
+		changes[0] = 0;
+		changes[1] = 0;
+		changes[2] = 0;
+		changes[3] = 0;
+	}
+
+	/**
+	 * Set all cells to empty
+	 */
+	public void clear() {
+		for (int i = 0; i < SIZE; i++) {
+			set(i, Candidates.ALL);
+		}
+	}
+
+	/**
+	 * Copy all masks into target
+	 *
+	 * @param target int[81] - receives the masks
+	 */
+	public void copyTo(int[] target) {
+		System.arraycopy(masks, 0, target, 0, SIZE);
+	}
+
+	/**
+	 * Replace all masks
+	 *
+	 * @param source int[81] - the new masks
+	 */
+	public void copyFrom(int[] source) {
+		for (int i = 0; i < SIZE; i++) {
+			set(i, source[i]);
+		}
+	}
+
+	// The xor of the keys of the candidates in mask
+	private static long zobrist(int index, int mask) {
+		int base = index * 24;
+		return ZOBRIST[base + (mask & 7)] ^ ZOBRIST[base + 8 + ((mask >> 3) & 7)]
+				^ ZOBRIST[base + 16 + ((mask >> 6) & 7)];
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Read a file of puzzles in line format, one puzzle per line
+ * <br>
+ * The first 81 characters of a line are the cells row by row, 1 - 9 is a
+ * given value and 0, '.', '-' or '*' is an empty cell, the rest of the line
+ * is ignored. Empty lines and lines starting with '#' are skipped.
+ * <br>
+ * The file is memory mapped and each board is parsed from the mapped bytes
+ * into an int[81] of candidate masks, without creating a String. A line that
+ * is not a puzzle gives a null board. The spliterator splits the file at
+ * line boundaries, so the boards can be read by a parallel stream.
+ */
+public final class PuzzleReader implements Closeable {
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	/**
+	 * Constructor, opens the file
+	 *
+	 * @param file Path - the puzzle file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public PuzzleReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		size = channel.size();
+	}
+
+	/**
+	 * @return Spliterator - the boards of the whole file, int[81] candidate
+	 *         masks, null for a line that is not a puzzle
+	 */
+	public Spliterator<int[]> spliterator() {
+		return new PuzzleSpliterator(channel, size, 0, size);
+	}
+
+	/**
+	 * @param parallel boolean - true for a parallel stream
+	 * @return Stream - the boards of the whole file, see spliterator()
+	 */
+	public Stream<int[]> stream(boolean parallel) {
+		return StreamSupport.stream(spliterator(), parallel);
+	}
+
+	/**
+	 * Close the file, the boards can no longer be read
+	 *
+	 * @throws IOException if closing fails
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The boards of a byte range of a puzzle file, see PuzzleReader
+ * <br>
+ * A spliterator owns the lines that start in its range, the last one may
+ * end after it. The file is mapped in windows of at most WINDOW bytes as
+ * the range is read, so a range may be larger than one mapping can hold.
+ */
+final class PuzzleSpliterator implements Spliterator<int[]> {
+
+	// Largest part of the file mapped at a time
+	static final int WINDOW = 1 << 26;
+
+	// Smallest range that is split
+	private static final int MIN_SPLIT = 1 << 16;
+
+	// Bytes of a line, used to estimate the size
+	private static final int LINE = MGrid.SIZE + 1;
+
+	// The candidate mask of each byte, -1 if not a cell
+	private static final int[] CELL = new int[256];
+
+	static {
+		for (int i = 0; i < CELL.length; i++) {
+			CELL[i] = -1;
+		}
+		for (int value = 0; value < 9; value++) {
+			CELL['1' + value] = Candidates.bit(value);
+		}
+		CELL['0'] = Candidates.ALL;
+		CELL['.'] = Candidates.ALL;
+		CELL['-'] = Candidates.ALL;
+		CELL['*'] = Candidates.ALL;
+	}
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private long position;
+
+	private long end;
+
+	// True when position is known to be at the start of a line
+	private boolean aligned;
+
+	private MappedByteBuffer window;
+
+	private long windowStart;
+
+	private long windowEnd;
+
+	/**
+	 * Constructor
+	 *
+	 * @param channel FileChannel - the open puzzle file
+	 * @param size long - the size of the file
+	 * @param start long - the first byte of the range
+	 * @param end long - the byte after the range
+	 */
+	PuzzleSpliterator(FileChannel channel, long size, long start, long end) {
+		this.channel = channel;
+		this.size = size;
+		this.position = start;
+		this.end = end;
+		this.aligned = start == 0;
+	}
+
+	public boolean tryAdvance(Consumer<? super int[]> action) {
+		try {
+			if (!aligned) {
+				// The line at the start of the range belongs to the range before
+				aligned = true;
+				if (position < end && byteAt(position - 1) != '\n') {
+					skipLine();
+				}
+			}
+			while (position < end) {
+				int first = byteAt(position);
+				if (first == '\n' || first == '\r' || first == '#') {
+					// Empty line or comment
+					skipLine();
+					continue;
+				}
+				action.accept(parseLine());
+				return true;
+			}
+			return false;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public Spliterator<int[]> trySplit() {
+		long remaining = end - position;
+		if (remaining < MIN_SPLIT) {
+			return null;
+		}
+		long middle = position + remaining / 2;
+		PuzzleSpliterator prefix = new PuzzleSpliterator(channel, size, position, middle);
+		prefix.aligned = aligned;
+		position = middle;
+		aligned = false;
+		return prefix;
+	}
+
+	public long estimateSize() {
+		return (end - position + LINE - 1) / LINE;
+	}
+
+	public int characteristics() {
+		return ORDERED | IMMUTABLE;
+	}
+
+	// The board of the line at position, null if the line is not a puzzle
+	private int[] parseLine() throws IOException {
+		if (position + MGrid.SIZE > windowEnd && windowEnd < size) {
+			map(position);
+		}
+		int[] masks = null;
+		if (position + MGrid.SIZE <= windowEnd) {
+			masks = new int[MGrid.SIZE];
+			int offset = (int) (position - windowStart);
+			for (int i = 0; i < MGrid.SIZE; i++) {
+				int mask = CELL[window.get(offset + i) & 0xFF];
+				if (mask < 0) {
+					masks = null;
+					break;
+				}
+				masks[i] = mask;
+			}
+		}
+		skipLine();
+		return masks;
+	}
+
+	// Move position after the next line feed, or to the end of the file
+	private void skipLine() throws IOException {
+		while (position < size) {
+			if (position < windowStart || position >= windowEnd) {
+				map(position);
+			}
+			int limit = (int) (windowEnd - windowStart);
+			int offset = (int) (position - windowStart);
+			while (offset < limit && window.get(offset) != '\n') {
+				offset++;
+			}
+			position = windowStart + offset;
+			if (offset < limit) {
+				position++;
+				return;
+			}
+		}
+	}
+
+	private int byteAt(long at) throws IOException {
+		if (at < windowStart || at >= windowEnd) {
+			map(at);
+		}
+		return window.get((int) (at - windowStart)) & 0xFF;
+	}
+
+	private void map(long at) throws IOException {
+		windowStart = at;
+		windowEnd = Math.min(size, at + WINDOW);
+		window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+	}
+}
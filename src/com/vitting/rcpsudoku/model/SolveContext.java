@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The budget of one solve, a deadline, a number of search nodes and a
+ * cancellation flag
+ * <br>
+ * A search counts its nodes itself and hands them in with charge() every
+ * CHECK_INTERVAL nodes, which is also when the clock is read. The node
+ * limit is therefore kept to within CHECK_INTERVAL nodes, and one context
+ * can be shared by the tasks of a parallel search. A search that runs out
+ * of budget returns IRule.RULE_BUDGET_EXCEEDED. Once exceeded a context
+ * stays exceeded, use a new one for each solve.
+ */
+public final class SolveContext {
+
+	/** Nodes between two checks of the budget */
+	public static final int CHECK_INTERVAL = 64;
+
+	/** No deadline or no node limit */
+	public static final long NO_LIMIT = Long.MAX_VALUE;
+
+	// System.nanoTime() of the deadline, only valid if timed
+	private final long deadline;
+
+	private final boolean timed;
+
+	private final long maxNodes;
+
+	private final AtomicLong nodes = new AtomicLong();
+
+	private volatile boolean cancelled;
+
+	private volatile boolean exceeded;
+
+	/**
+	 * Constructor, no limits, only cancel() stops the search
+	 */
+	public SolveContext() {
+		this(NO_LIMIT, NO_LIMIT);
+	}
+
+	/**
+	 * Constructor, the time starts now
+	 *
+	 * @param timeoutMillis long - time allowed for the solve, or NO_LIMIT
+	 * @param maxNodes long - search nodes allowed, or NO_LIMIT
+	 */
+	public SolveContext(long timeoutMillis, long maxNodes) {
+		if (timeoutMillis < 0 || maxNodes < 0) {
+			throw new IllegalArgumentException("Negative budget: " + timeoutMillis + " ms, " + maxNodes + " nodes");
+		}
+		timed = timeoutMillis != NO_LIMIT;
+		deadline = timed ? System.nanoTime() + Math.min(timeoutMillis, Long.MAX_VALUE / 2_000_000) * 1_000_000 : 0;
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * Stop the search, may be called from any thread
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return boolean - true if cancel() was called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Hand in search nodes and check the budget
+	 *
+	 * @param count long - the nodes searched since the last charge
+	 * @return boolean - true if the search must stop
+	 */
+	public boolean charge(long count) {
+		nodes.addAndGet(count);
+		return isExceeded();
+	}
+
+	/**
+	 * Check the budget without handing in nodes
+	 *
+	 * @return boolean - true if cancelled, past the deadline or over the
+	 *         node limit
+	 */
+	public boolean isExceeded() {
+		if (!exceeded && (cancelled || nodes.get() > maxNodes
+				|| (timed && System.nanoTime() - deadline > 0))) {
+			exceeded = true;
+		}
+		return exceeded;
+	}
+
+	/**
+	 * @return long - the nodes handed in so far
+	 */
+	public long getNodes() {
+		return nodes.get();
+	}
+}
@@ -16,12 +16,15 @@ package com.vitting.rcpsudoku.model;
 import java.util.Vector;
 
 /**
- * Singleton anchor point for for the Sudoku data model
+ * Anchor point for for the Sudoku data model
+ * <br>
+ * Each instance is an independent game, the GUI uses a single default
+ * instance from getSingleInstance()
  * 
  */
 public class SudokuBase {
 
-    // singleton placeholder
+    // default instance used by the GUI
     private static SudokuBase singleInstance = null;
 
     private boolean modelDirty = false;
@@ -34,33 +37,38 @@ public class SudokuBase {
 
     private MBlocks blocks = null;
 
+    private MGrid grid = new MGrid();
+
     private MCell[][] mCells = new MCell[9][9];
 
+    // the same cells addressed by index (row * 9 + column)
+    private MCell[] indexedCells = new MCell[MGrid.SIZE];
+
     private MCellStack stack = new MCellStack();
 
     /**
-         * Private constructor prevents instation from other classes <br>
-         * Create the initial model classes
+         * Create a new empty game with its own model classes
          */
-    private SudokuBase() {
+    public SudokuBase() {
 	// Create the blocks array
 	blocks = new MBlocks();
 	for (int x = 0; x < 9; x++) {
 	    for (int y = 0; y < 9; y++) {
-		MCell cell = new MCell(x, y, getBlocks().findBlock(x, y));
+		MCell cell = new MCell(grid, x, y, getBlocks().findBlock(x, y));
 		mCells[x][y] = cell;
+		indexedCells[cell.getIndex()] = cell;
 		blocks.addCell(cell);
 	    }
 	}
     }
 
     /**
-         * Getter for the single instance of SudokuBase <br>
+         * Getter for the default instance of SudokuBase used by the GUI <br>
          * If no instance exists one is created
          * 
          * @return singleInstance of SudokuBase
          */
-    public static SudokuBase getSingleInstance() {
+    public static synchronized SudokuBase getSingleInstance() {
 	if (singleInstance == null) {
 	    singleInstance = new SudokuBase();
 	}
@@ -79,6 +87,23 @@ public class SudokuBase {
 	return mCells[x][y];
     }
 
+    /**
+         * @param index
+         *                the cell index (0 - 80)
+         * 
+         * @return the MCell corresponding to the index
+         */
+    public MCell getCell(int index) {
+	return indexedCells[index];
+    }
+
+    /**
+         * @return MGrid - the candidate masks for all cells
+         */
+    public MGrid getGrid() {
+	return grid;
+    }
+
     /**
          * @return MBlocks - the blocks array
          */
@@ -111,6 +136,22 @@ public class SudokuBase {
 	}
     }
 
+    /**
+         * Start a new game from candidate masks <br>
+         * Cells with a single candidate become initial values, no
+         * listeners are notified
+         *
+         * @param masks
+         *                int[81] - candidate mask for each cell index
+         */
+    public void loadMasks(int[] masks) {
+	stack.clear();
+	grid.copyFrom(masks);
+	for (int i = 0; i < MGrid.SIZE; i++) {
+	    indexedCells[i].setInitialValue(Candidates.isSingle(masks[i]));
+	}
+    }
+
     /**
          * @param listener
          *                IModelListener
@@ -159,7 +200,7 @@ public class SudokuBase {
          * @return int elementsInStack
          */
     public int pushStack() {
-	return stack.pushGame(mCells);
+	return stack.pushGame(grid);
     }
 
     /**
@@ -168,7 +209,7 @@ public class SudokuBase {
          * @return int elementsInStack
          */
     public int popStack() {
-	int result = stack.popGame(mCells);
+	int result = stack.popGame(grid);
 	cellsChanged(true);
 	return result;
     }
@@ -13,21 +13,21 @@
 
 package com.vitting.rcpsudoku.model;
 
-import org.w3c.dom.*;
-import org.xml.sax.ErrorHandler;
-import org.xml.sax.SAXException;
-import org.xml.sax.SAXParseException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.BitSet;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
 
 /**
@@ -35,7 +35,37 @@ import java.util.Date;
  */
 public class SudokuDocument implements ISudokuDokument {
 
-    Document document;
+    // Configured once and shared by all loads
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    // Shared by all saves
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private static final String ENCODING = "UTF-8";
+
+    // The document of the last save on each thread
+    private static final ThreadLocal<EncodingBuffer> ENCODING_BUFFER =
+            ThreadLocal.withInitial(EncodingBuffer::new);
+
+    // The value attribute of each candidate mask, its values in ascending order
+    private static final String[] VALUES = new String[Candidates.ALL + 1];
+
+    // The row and column attributes
+    private static final String[] POSITIONS = new String[9];
+
+    static {
+        for (int mask = 0; mask < VALUES.length; mask++) {
+            StringBuilder stringBuilder = new StringBuilder();
+            for (int value = mask; value != 0; value = Candidates
+                    .withoutLowest(value)) {
+                stringBuilder.append(Candidates.lowest(value) + 1);
+            }
+            VALUES[mask] = stringBuilder.toString();
+        }
+        for (int i = 0; i < POSITIONS.length; i++) {
+            POSITIONS[i] = Integer.toString(i);
+        }
+    }
 
     private File saveFile;
 
@@ -59,9 +89,13 @@ public class SudokuDocument implements ISudokuDokument {
         // Clear the base
         base.clear(true);
 
-        parseFile();
-
-        validateDocument(base);
+        try {
+            readDocument(base);
+        } catch (SudokuException e) {
+            // Leave no part of an invalid document in the base
+            base.clear(true);
+            throw e;
+        }
         // Notify all cells
         base.cellsChanged(true);
     }
@@ -73,18 +107,12 @@ public class SudokuDocument implements ISudokuDokument {
      * @throws SudokuException throws in case of invalid state
      */
     public void save(SudokuBase base) throws SudokuException {
-        // Create the descriptor file
-        Element game = generateGameNode();
-
-        // Write the game data
-        writeGameData(base, game);
-
-        // Use a Transformer for output
-        transformOutput();
+        // Stream the document to the file
+        writeDocument(base);
     }
 
     private void checkIfCanReadFile() throws SudokuException {
-        if (saveFile.canRead()) {
+        if (!saveFile.canRead()) {
             throw new SudokuException("Document could not be found: "
                     + saveFile.getAbsolutePath(),
                     SudokuException.DISPOSITION_CONTINUE,
@@ -92,239 +120,256 @@ public class SudokuDocument implements ISudokuDokument {
         }
     }
 
-    private void parseFile() throws SudokuException {
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            builder.setErrorHandler(generateErrorHandler());
-            document = builder.parse(saveFile);
-        } catch (SAXException sxe) {
+    private void readDocument(SudokuBase base) throws SudokuException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(saveFile))) {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(
+                    saveFile.toURI().toString(), in);
+            try {
+                while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    // Skip the prolog
+                }
+                validateRoot(reader);
+                readRootContent(reader, base);
+                while (reader.hasNext()) {
+                    // Parse the rest so a broken document is rejected
+                    reader.next();
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException xse) {
             // Error generated during parsing
             throw new SudokuException(
-                    "SAXException during passing of BackupSet Descriptor Document", sxe,
-                    SudokuException.SEVERITY_ERROR,
-                    SudokuException.DISPOSITION_CONTINUE);
-        } catch (ParserConfigurationException pce) {
-            // Parser with specified options can't be built
-            throw new SudokuException(
-                    "Error Loading BackupSet Descriptor Document", pce,
+                    "XMLStreamException during parsing of Sudoku Document", xse,
                     SudokuException.SEVERITY_ERROR,
                     SudokuException.DISPOSITION_CONTINUE);
         } catch (IOException ioe) {
             // IO Error
             throw new SudokuException(
-                    "IOException during passing BackupSet Descriptor Document", ioe,
+                    "IOException during parsing of Sudoku Document", ioe,
                     SudokuException.SEVERITY_ERROR,
                     SudokuException.DISPOSITION_CONTINUE);
         }
     }
 
-    private ErrorHandler generateErrorHandler() {
-        return new org.xml.sax.ErrorHandler() {
-
-            // Treat warnings as fatal
-            public void warning(SAXParseException exception)
-                    throws SAXException {
-                throw exception;
-            }
-
-            // Treat warnings as fatal
-            public void error(SAXParseException exception)
-                    throws SAXException {
-                throw exception;
-            }
-
-            public void fatalError(SAXParseException exception) {
-            }
-        };
-    }
-
-    private void validateFileFormat() throws SudokuException {
-        Node documentElement = document.getDocumentElement();
-        if (!documentElement.getNodeName().equals(SUDOKU)) {
+    private void validateRoot(XMLStreamReader reader) throws SudokuException {
+        if (!reader.getLocalName().equals(SUDOKU)) {
             throw new SudokuException(" Incorrect file format",
                     SudokuException.SEVERITY_ERROR,
                     SudokuException.DISPOSITION_CONTINUE);
         }
-    }
-
-    private void validateFileDescriptor() throws SudokuException {
-        Node documentElement = document.getDocumentElement();
-        NamedNodeMap bsdAttributes = documentElement.getAttributes();
-        Node version = bsdAttributes.getNamedItem(DOCUMENT_VERSION);
+        String version = reader.getAttributeValue(null, DOCUMENT_VERSION);
         if (version == null) {
             throw new SudokuException("File descriptor missing",
                     SudokuException.SEVERITY_ERROR,
                     SudokuException.DISPOSITION_CONTINUE);
         }
-    }
-
-    private void validateFileDescriptorVersion() throws SudokuException {
-        Node documentElement = document.getDocumentElement();
-        NamedNodeMap bsdAttributes = documentElement.getAttributes();
-        Node version = bsdAttributes.getNamedItem(DOCUMENT_VERSION);
-        if (version.getNodeValue().compareTo(CURRENT_DOCUMENT_VERSION) != 0) {
+        // Only version 1.0 supported
+        if (version.compareTo(CURRENT_DOCUMENT_VERSION) != 0) {
             throw new SudokuException(
                     "Unsupported File Descriptor file version"
-                            + version.getNodeValue(),
+                            + version,
                     SudokuException.SEVERITY_INFORMATION,
                     SudokuException.DISPOSITION_CONTINUE);
         }
     }
 
-    private void validateFileFormatLength(Element documentElement) throws SudokuException {
-        NodeList rootNodes = documentElement.getChildNodes();
-        if (rootNodes.getLength() != 1) {
-            throw new SudokuException("Invalid File format",
-                    SudokuException.SEVERITY_WARNING,
-                    SudokuException.DISPOSITION_CONTINUE);
+    /**
+     * Read the children of the root, exactly one node which holds the cells
+     * <br>
+     * Every node counts, also white space and comments, like the child nodes
+     * of a DOM.
+     */
+    private void readRootContent(XMLStreamReader reader, SudokuBase base)
+            throws XMLStreamException, SudokuException {
+        int children = 0;
+        while (true) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    children++;
+                    if (children == 1) {
+                        readGame(reader, base);
+                    } else {
+                        skipElement(reader);
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (children != 1) {
+                        throw new SudokuException("Invalid File format",
+                                SudokuException.SEVERITY_WARNING,
+                                SudokuException.DISPOSITION_CONTINUE);
+                    }
+                    return;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    children++;
+                    break;
+                default:
+                    // Nothing else occurs inside an element
+            }
         }
     }
 
-    private void validateCell(RowColumnHolder holder, Integer position, SudokuBase gameBase, NodeList cells) {
-        if ((cells.item(position).getNodeType() == Node.ELEMENT_NODE)
-                && (cells.item(position).getNodeName().compareTo(CELL) == 0)) {
-            NamedNodeMap cellAttributes = cells.item(position).getAttributes();
-            Node node = cellAttributes.getNamedItem(ROW);
-            if (node != null) {
-                holder.setRow(Integer.parseInt(node.getNodeValue()));
-            }
-            node = cellAttributes.getNamedItem(COLUMN);
-            if (node != null) {
-                holder.setColumn(Integer.parseInt(node.getNodeValue()));
-            }
-            MCell cell = gameBase.getCell(holder.getRow(), holder.getColumn());
-            node = cellAttributes.getNamedItem(VALUE);
-            if (node != null) {
-
-                // Convert the string to a BitSet
-                String stringValue = node.getNodeValue();
-                BitSet value = new BitSet();
-                if (stringValue.length() < 9) {
-                    for (int j = 0; j < stringValue.length(); j++) {
-                        int x = Character.getNumericValue(stringValue
-                                .charAt(j));
-                        if ((x > 0) && (x < 10)) {
-                            value.set(x - 1);
-                        }
+    // The Cell elements of the game, other content is ignored. A cell
+    // without row or column uses the one of the cell before.
+    private void readGame(XMLStreamReader reader, SudokuBase base)
+            throws XMLStreamException, SudokuException {
+        int row = -1;
+        int column = -1;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (depth == 2 && reader.getLocalName().equals(CELL)) {
+                    row = readPosition(reader, ROW, row);
+                    column = readPosition(reader, COLUMN, column);
+                    if (row < 0 || row > 8 || column < 0 || column > 8) {
+                        throw new SudokuException("Invalid cell position: " + row + ", " + column,
+                                SudokuException.SEVERITY_ERROR,
+                                SudokuException.DISPOSITION_CONTINUE);
+                    }
+                    MCell cell = base.getCell(row, column);
+                    String value = reader.getAttributeValue(null, VALUE);
+                    if (value != null) {
+                        cell.setMask(parseMask(value));
+                    }
+                    String status = reader.getAttributeValue(null, STATUS);
+                    if (status != null) {
+                        cell.setInitialValue(status.equals(STATUS_INITIAL));
                     }
-                } else {
-                    // The cell is empty
-                    value.set(0, 9);
                 }
-                cell.setValue(value);
-            }
-            node = cellAttributes.getNamedItem(STATUS);
-            if (node != null) {
-                cell.setInitialValue(node.getNodeValue().equals(
-                        STATUS_INITIAL));
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
             }
         }
     }
 
-    private void validateCells(SudokuBase gameBase, Element documentElement) {
-        NodeList rootNodes = documentElement.getChildNodes();
-        RowColumnHolder holder = new RowColumnHolder();
-        Node game = rootNodes.item(0);
-        NodeList cells = game.getChildNodes();
-        for (int i = 0; i < cells.getLength(); i++) {
-            validateCell(holder, i, gameBase, rootNodes);
+    private static int readPosition(XMLStreamReader reader, String name, int previous)
+            throws SudokuException {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            return previous;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            throw new SudokuException("Invalid cell " + name + ": " + value, nfe,
+                    SudokuException.SEVERITY_ERROR,
+                    SudokuException.DISPOSITION_CONTINUE);
         }
     }
 
-    private void validateDocument(SudokuBase gameBase) throws SudokuException {
-        validateFileFormat();
-        //[BS]Weird variable name
-        validateFileDescriptor();
-        // Only version 1.0 supported
-        validateFileDescriptorVersion();
+    // Convert the value string to a candidate mask, 9 or more characters is an empty cell
+    private static int parseMask(String value) {
+        if (value.length() >= 9) {
+            return Candidates.ALL;
+        }
+        int mask = Candidates.NONE;
+        for (int j = 0; j < value.length(); j++) {
+            int x = Character.getNumericValue(value.charAt(j));
+            if ((x > 0) && (x < 10)) {
+                mask |= Candidates.bit(x - 1);
+            }
+        }
+        return mask;
+    }
 
-        // Parse the root Node and the only child
-        validateFileFormatLength(document.getDocumentElement());
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
 
-        validateCells(gameBase, document.getDocumentElement());
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Element names as written, like a DOM parser that is not namespace aware
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+        // Adjacent text is one node, like in a DOM
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
     }
 
-    private Element generateGameNode() throws SudokuException {
-        Element game;
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    private void writeDocument(SudokuBase base) throws SudokuException {
+        EncodingBuffer buffer = ENCODING_BUFFER.get();
+        buffer.reset();
         try {
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            document = builder.newDocument();
-            document.appendChild(document.createComment(DOCUMENT_COMMENT + " "
-                    + new Date()));
-            Element root = document.createElement(SUDOKU);
-            document.appendChild(root);
-            root.setAttribute(DOCUMENT_VERSION, CURRENT_DOCUMENT_VERSION);
-            game = document.createElement(GAME);
-            root.appendChild(game);
-        } catch (ParserConfigurationException pce) {
-            throw new SudokuException("Error Creating Initial Document", pce,
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(buffer, ENCODING);
+            writer.writeStartDocument(ENCODING, "1.0");
+            writer.writeComment(DOCUMENT_COMMENT + " " + new Date());
+            writer.writeStartElement(SUDOKU);
+            writer.writeAttribute(DOCUMENT_VERSION, CURRENT_DOCUMENT_VERSION);
+            writeGameData(base, writer);
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException xse) {
+            throw new SudokuException("Failed to write Sudoku document", xse,
+                    SudokuException.SEVERITY_ERROR,
+                    SudokuException.DISPOSITION_CONTINUE);
+        }
+        try (FileChannel channel = FileChannel.open(saveFile.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = buffer.toByteBuffer();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException ioe) {
+            throw new SudokuException("Failed to write Sudoku document", ioe,
                     SudokuException.SEVERITY_ERROR,
                     SudokuException.DISPOSITION_CONTINUE);
         }
-        return game;
     }
 
-    private void writeGameData(SudokuBase base, Element gameNode) {
+    private void writeGameData(SudokuBase base, XMLStreamWriter writer) throws XMLStreamException {
+        boolean empty = true;
         for (int x = 0; x < 9; x++)
             for (int y = 0; y < 9; y++) {
                 MCell cell = base.getCell(x, y);
                 // Dont save empty cells
                 if (!cell.isEmpty()) {
-                    Element cellElement = document.createElement(CELL);
-                    cellElement.setAttribute(ROW, Integer.toString(x));
-                    cellElement.setAttribute(COLUMN, Integer.toString(y));
-
-                    // Convert cell value to a string
-                    StringBuilder stringBuilder = new StringBuilder();
-                    BitSet value = cell.getValue();
-                    for (int i = value.nextSetBit(0); i >= 0; i = value
-                            .nextSetBit(i + 1)) {
-                        stringBuilder.append(i + 1);
+                    if (empty) {
+                        writer.writeStartElement(GAME);
+                        empty = false;
                     }
-                    cellElement.setAttribute(VALUE, stringBuilder.toString());
-                    cellElement.setAttribute(STATUS,
+                    // Attributes in the order the DOM writer used
+                    writer.writeEmptyElement(CELL);
+                    writer.writeAttribute(COLUMN, POSITIONS[y]);
+                    writer.writeAttribute(ROW, POSITIONS[x]);
+                    writer.writeAttribute(STATUS,
                             cell.isInitialValue() ? STATUS_INITIAL
                                     : STATUS_CALCULATED);
-                    gameNode.appendChild(cellElement);
+                    writer.writeAttribute(VALUE, VALUES[cell.getMask() & Candidates.ALL]);
                 }
             }
-    }
-
-    private void transformOutput() throws SudokuException {
-        TransformerFactory tFactory = TransformerFactory.newInstance();
-        try {
-            Transformer transformer = tFactory.newTransformer();
-            DOMSource source = new DOMSource(document);
-            StreamResult result = new StreamResult(saveFile);
-            transformer.transform(source, result);
-        } catch (Exception e) {
-            throw new SudokuException(
-                    "Failed to write BackupSet descriptor document", e,
-                    SudokuException.SEVERITY_ERROR,
-                    SudokuException.DISPOSITION_CONTINUE);
+        if (empty) {
+            writer.writeEmptyElement(GAME);
+        } else {
+            writer.writeEndElement();
         }
     }
 
-    private static class RowColumnHolder {
-        private Integer row;
-        private Integer column;
-
-        public Integer getRow() {
-            return row;
-        }
-
-        public void setRow(Integer row) {
-            this.row = row;
-        }
+    /**
+     * The bytes of one document, kept by each thread between saves
+     */
+    private static final class EncodingBuffer extends ByteArrayOutputStream {
 
-        public Integer getColumn() {
-            return column;
+        EncodingBuffer() {
+            super(8192);
         }
 
-        public void setColumn(Integer column) {
-            this.column = column;
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
         }
     }
 }
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.model;
+
+/**
+ * Fixed layout of the Sudoku board, computed once
+ * <br>
+ * Cells are addressed by index (row * 9 + column, 0 - 80). The 27 houses are
+ * numbered rows 0 - 8, columns 9 - 17 and blocks 18 - 26. The arrays returned
+ * are shared tables and must not be modified by the caller.
+ */
+public final class SudokuTopology {
+
+	/**
+	 * Number of houses (rows, columns and blocks)
+	 */
+	public static final int HOUSES = 27;
+
+	/**
+	 * Number of peers for each cell
+	 */
+	public static final int PEERS = 20;
+
+	/**
+	 * House number of the first row
+	 */
+	public static final int FIRST_ROW_HOUSE = 0;
+
+	/**
+	 * House number of the first column
+	 */
+	public static final int FIRST_COLUMN_HOUSE = 9;
+
+	/**
+	 * House number of the first block
+	 */
+	public static final int FIRST_BLOCK_HOUSE = 18;
+
+	private static final int[] ROW_OF = new int[MGrid.SIZE];
+
+	private static final int[] COLUMN_OF = new int[MGrid.SIZE];
+
+	private static final int[] BLOCK_OF = new int[MGrid.SIZE];
+
+	private static final int[][] HOUSE_CELLS = new int[HOUSES][9];
+
+	private static final int[][] CELL_HOUSES = new int[MGrid.SIZE][3];
+
+	private static final int[][] PEER_CELLS = new int[MGrid.SIZE][PEERS];
+
+	static {
+		int[] blockFill = new int[9];
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			int row = cell / 9;
+			int column = cell % 9;
+			int block = (row / 3) * 3 + column / 3;
+			ROW_OF[cell] = row;
+			COLUMN_OF[cell] = column;
+			BLOCK_OF[cell] = block;
+			HOUSE_CELLS[FIRST_ROW_HOUSE + row][column] = cell;
+			HOUSE_CELLS[FIRST_COLUMN_HOUSE + column][row] = cell;
+			HOUSE_CELLS[FIRST_BLOCK_HOUSE + block][blockFill[block]++] = cell;
+			CELL_HOUSES[cell][0] = FIRST_ROW_HOUSE + row;
+			CELL_HOUSES[cell][1] = FIRST_COLUMN_HOUSE + column;
+			CELL_HOUSES[cell][2] = FIRST_BLOCK_HOUSE + block;
+		}
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			int count = 0;
+			for (int other = 0; other < MGrid.SIZE; other++) {
+				if (other != cell
+						&& (ROW_OF[other] == ROW_OF[cell]
+						|| COLUMN_OF[other] == COLUMN_OF[cell]
+						|| BLOCK_OF[other] == BLOCK_OF[cell])) {
+					PEER_CELLS[cell][count++] = other;
+				}
+			}
+		}
+	}
+
+	private SudokuTopology() {
+		// Static tables only
+	}
+
+	/**
+	 * @param row int - the row (0 - 8)
+	 * @param column int - the column (0 - 8)
+	 * @return int - the cell index (0 - 80)
+	 */
+	public static int index(int row, int column) {
+		return row * 9 + column;
+	}
+
+	/**
+	 * @param cell int - the cell index (0 - 80)
+	 * @return int - the row of the cell (0 - 8)
+	 */
+	public static int row(int cell) {
+		return ROW_OF[cell];
+	}
+
+	/**
+	 * @param cell int - the cell index (0 - 80)
+	 * @return int - the column of the cell (0 - 8)
+	 */
+	public static int column(int cell) {
+		return COLUMN_OF[cell];
+	}
+
+	/**
+	 * @param cell int - the cell index (0 - 80)
+	 * @return int - the block of the cell (0 - 8)
+	 */
+	public static int block(int cell) {
+		return BLOCK_OF[cell];
+	}
+
+	/**
+	 * @param row int - the row (0 - 8)
+	 * @param column int - the column (0 - 8)
+	 * @return int - the block number (0 - 8)
+	 */
+	public static int block(int row, int column) {
+		return BLOCK_OF[row * 9 + column];
+	}
+
+	/**
+	 * @param cell int - the cell index (0 - 80)
+	 * @return int[20] - the cells sharing a row, column or block with cell
+	 */
+	public static int[] peers(int cell) {
+		return PEER_CELLS[cell];
+	}
+
+	/**
+	 * @param cell int - the cell index (0 - 80)
+	 * @return int[3] - the row, column and block house of the cell
+	 */
+	public static int[] houses(int cell) {
+		return CELL_HOUSES[cell];
+	}
+
+	/**
+	 * @param house int - the house number (0 - 26)
+	 * @return int[9] - the cells in the house
+	 */
+	public static int[] house(int house) {
+		return HOUSE_CELLS[house];
+	}
+
+	/**
+	 * @param row int - the row (0 - 8)
+	 * @return int[9] - the cells in the row
+	 */
+	public static int[] rowCells(int row) {
+		return HOUSE_CELLS[FIRST_ROW_HOUSE + row];
+	}
+
+	/**
+	 * @param column int - the column (0 - 8)
+	 * @return int[9] - the cells in the column
+	 */
+	public static int[] columnCells(int column) {
+		return HOUSE_CELLS[FIRST_COLUMN_HOUSE + column];
+	}
+
+	/**
+	 * @param block int - the block (0 - 8)
+	 * @return int[9] - the cells in the block
+	 */
+	public static int[] blockCells(int block) {
+		return HOUSE_CELLS[FIRST_BLOCK_HOUSE + block];
+	}
+}
@@ -28,14 +28,15 @@ public class VerifyGame {
     /**
      * Verify the validity of the cell
      *
+     * @param base SudokuBase - the game the cell belongs to
+     * @param cell MCell - the cell to verify
      * @return boolean - true if the cell is valid
      */
-    public boolean verifyCell(MCell cell) {
-        SudokuBase base = SudokuBase.getSingleInstance();
+    public boolean verifyCell(SudokuBase base, MCell cell) {
         fail = null;
 
         // Check for empty cells
-        if (cell.getValue().cardinality() == 0) {
+        if (!cell.isPossible()) {
             solutionPossible = false;
         }
 
@@ -62,6 +63,7 @@ public class VerifyGame {
      * Verify all the cells <br>
      * Verify is reset to its initial state before verifyAll
      *
+     * @param base   SudokuBase - the game to verify
      * @param silent boolean - don't rapport an exception if true
      * @return int one of {RULE_NO_CHANGE, RULE_GAME_COMPLETE,
      * RULE_NOT_POSSIBLE}
@@ -69,15 +71,14 @@ public class VerifyGame {
      *                         only if silent = false, exception will contaim
      *                         failing coordinates
      */
-    public int verifyAll(boolean silent) throws SudokuException {
-        SudokuBase base = SudokuBase.getSingleInstance();
+    public int verifyAll(SudokuBase base, boolean silent) throws SudokuException {
         solutionPossible = true;
         gameComplete = true;
 
         for (int x = 0; x < 9; x++) {
             for (int y = 0; y < 9; y++) {
                 MCell cell = base.getCell(x, y);
-                if (!verifyCell(cell)) {
+                if (!verifyCell(base, cell)) {
                     if (silent) {
                         solutionPossible = false;
                         return IRule.RULE_NOT_POSSIBLE;
@@ -106,56 +107,32 @@ public class VerifyGame {
 
     // Check the cells in the same row
     private boolean isRowPossible(SudokuBase base, MCell cell, int cellValue) {
-        int row = cell.getRow();
-        for (int i = 0; i < 9; i++) {
-            if (base.getCell(row, i) == cell) {
-                // dont check self
-                continue;
-            }
-            if (base.getCell(row, i).isValueFound()) {
-                if (base.getCell(row, i).getIntValue() == cellValue) {
-                    // This is an error
-                    fail = base.getCell(row, i);
-                    return false;
-                }
-            }
-        }
-        return true;
+        return isHousePossible(base, SudokuTopology.rowCells(cell.getRow()), cell, cellValue);
     }
 
     // Check the cells in same column
     private boolean isColumnPossible(SudokuBase base, MCell cell, int cellValue) {
-        int column = cell.getColumn();
-        for (int i = 0; i < 9; i++) {
-            if (base.getCell(i, column) == cell) {
-                // dont check self
-                continue;
-            }
-            if (base.getCell(i, column).isValueFound()) {
-                if (base.getCell(i, column).getIntValue() == cellValue) {
-                    // This is an error
-                    fail = base.getCell(i, column);
-                    return false;
-                }
-            }
-        }
-        return true;
+        return isHousePossible(base, SudokuTopology.columnCells(cell.getColumn()), cell, cellValue);
     }
 
     // Check the cells in the same block
     private boolean isBlockPossible(SudokuBase base, MCell cell, int cellValue) {
-        MCell[] blockCells = base.getBlocks().getCells(cell.getBlock());
+        return isHousePossible(base, SudokuTopology.blockCells(cell.getBlock()), cell, cellValue);
+    }
+
+    // Check the other cells in the house for a found value equal to cellValue
+    private boolean isHousePossible(SudokuBase base, int[] houseCells, MCell cell, int cellValue) {
+        MGrid grid = base.getGrid();
+        int mask = Candidates.bit(cellValue);
         for (int i = 0; i < 9; i++) {
-            if (blockCells[i] == cell) {
+            if (houseCells[i] == cell.getIndex()) {
                 // dont check self
                 continue;
             }
-            if (blockCells[i].isValueFound()) {
-                if (blockCells[i].getIntValue() == cellValue) {
-                    // This is an error
-                    fail = blockCells[i];
-                    return false;
-                }
+            if (grid.get(houseCells[i]) == mask) {
+                // This is an error
+                fail = base.getCell(houseCells[i]);
+                return false;
             }
         }
         return true;
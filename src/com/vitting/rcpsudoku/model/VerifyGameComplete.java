@@ -21,12 +21,13 @@ public class VerifyGameComplete {
     /**
          * Check for game complete
          * 
+         * @param base
+         *                SudokuBase - the game to check
          * @return int one of {RULE_NO_CHANGE, RULE_GAME_COMPLETE,
          *         RULE_NOT_POSSIBLE}
          */
-    public int verifyAll() {
+    public int verifyAll(SudokuBase base) {
 	boolean complete = true;
-	SudokuBase base = SudokuBase.getSingleInstance();
 	for (int row = 0; row < 9; row++) {
 	    for (int column = 0; column < 9; column++) {
 		MCell cell = base.getCell(row, column);
@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules;
+
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.IHouseRule;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SudokuBase;
+import com.vitting.rcpsudoku.model.SudokuTopology;
+
+import java.util.Arrays;
+
+/**
+ * Fish rule, X-Wing, Swordfish and Jellyfish
+ * <br>
+ * When a number is possible in n rows (the base) only in the same n columns
+ * (the cover), the number must be in those columns within the base rows and
+ * is removed from the rest of the cover columns. The same holds with rows
+ * and columns swapped.
+ * <br>
+ * For each number the positions in the rows (or columns) are kept as 9 bit
+ * masks in the scratch of the caller, a fish is a set of n masks whose union
+ * has n bits. Run on a row the rule searches the row based fish including
+ * that row, run on a column the column based fish including that column.
+ * Removing candidates cannot make a fish on unchanged lines productive, so
+ * these are all fish that can be new when the line changed.
+ */
+public final class FishRule implements IHouseRule {
+
+	// Jellyfish, larger fish have a smaller complement fish
+	private static final int MAX_SIZE = 4;
+
+	// Returned by find() when n lines share fewer than n positions
+	private static final int IMPOSSIBLE = -1;
+
+	// The tables in scratch, the open positions of each number in the line,
+	// the numbers found in each line and the positions of each number and line
+	private static final int COUNTS = 0;
+	private static final int LINE_FOUND = 9;
+	private static final int POSITIONS = 2 * 9;
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IHouseRule#runHouse(com.vitting.rcpsudoku.model.SudokuBase, int)
+	 */
+	public int runHouse(SudokuBase base, int house) {
+		return runHouse(base, house, new int[SCRATCH_SIZE]);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IHouseRule#runHouse(com.vitting.rcpsudoku.model.SudokuBase, int, int[])
+	 */
+	public int runHouse(SudokuBase base, int house, int[] scratch) {
+		MGrid grid = base.getGrid();
+		int first = house < SudokuTopology.FIRST_COLUMN_HOUSE
+				? SudokuTopology.FIRST_ROW_HOUSE : SudokuTopology.FIRST_COLUMN_HOUSE;
+		int line = house - first;
+
+		// The numbers with 2 - MAX_SIZE open positions in the line
+		int[] lineCells = SudokuTopology.house(house);
+		int once = Candidates.NONE;
+		int twice = Candidates.NONE;
+		int found = Candidates.NONE;
+		Arrays.fill(scratch, COUNTS, COUNTS + 9, 0);
+		for (int p = 0; p < 9; p++) {
+			int mask = grid.get(lineCells[p]);
+			if (Candidates.isSingle(mask)) {
+				found |= mask;
+				continue;
+			}
+			twice |= once & mask;
+			once |= mask;
+			for (int rest = mask; rest != 0; rest &= rest - 1) {
+				scratch[COUNTS + Integer.numberOfTrailingZeros(rest)]++;
+			}
+		}
+		int numbers = twice & ~found;
+		for (int number = 0; number < 9; number++) {
+			if (scratch[COUNTS + number] > MAX_SIZE) {
+				numbers &= ~Candidates.bit(number);
+			}
+		}
+		if (numbers == Candidates.NONE) {
+			return RULE_NO_CHANGE;
+		}
+
+		// For each of these numbers and each line the open positions, and
+		// the numbers found in each line
+		Arrays.fill(scratch, LINE_FOUND, POSITIONS + 9 * 9, 0);
+		for (int l = 0; l < 9; l++) {
+			int[] cells = SudokuTopology.house(first + l);
+			for (int p = 0; p < 9; p++) {
+				int mask = grid.get(cells[p]);
+				if (Candidates.isSingle(mask)) {
+					scratch[LINE_FOUND + l] |= mask;
+					continue;
+				}
+				for (int rest = mask & numbers; rest != 0; rest &= rest - 1) {
+					scratch[POSITIONS + 9 * Integer.numberOfTrailingZeros(rest) + l] |= 1 << p;
+				}
+			}
+		}
+
+		int result = RULE_NO_CHANGE;
+		for (int todo = numbers; todo != 0; todo &= todo - 1) {
+			int number = Integer.numberOfTrailingZeros(todo);
+			int offset = POSITIONS + 9 * number;
+			int count = scratch[COUNTS + number];
+
+			// The other lines that can be part of a fish
+			int lines = 0;
+			for (int l = 0; l < 9; l++) {
+				int size = Integer.bitCount(scratch[offset + l]);
+				if (l != line && size >= 2 && size <= MAX_SIZE
+						&& (scratch[LINE_FOUND + l] & Candidates.bit(number)) == 0) {
+					lines |= 1 << l;
+				}
+			}
+
+			for (int size = Math.max(2, count); size <= MAX_SIZE; size++) {
+				int chosen = find(scratch, offset, lines, 0, 1 << line,
+						scratch[offset + line], size);
+				if (chosen == IMPOSSIBLE) {
+					return RULE_NOT_POSSIBLE;
+				}
+				if (chosen != 0) {
+					// Remove the number from the cover outside the base lines
+					int cover = 0;
+					for (int rest = chosen; rest != 0; rest &= rest - 1) {
+						cover |= scratch[offset + Integer.numberOfTrailingZeros(rest)];
+					}
+					for (int l = 0; l < 9; l++) {
+						int targets = scratch[offset + l] & cover;
+						if ((chosen & (1 << l)) != 0 || targets == 0) {
+							continue;
+						}
+						int[] cells = SudokuTopology.house(first + l);
+						for (; targets != 0; targets &= targets - 1) {
+							int cell = cells[Integer.numberOfTrailingZeros(targets)];
+							grid.set(cell, grid.get(cell) & ~Candidates.bit(number));
+						}
+					}
+					result = RULE_CELL_CHANGED;
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Find size lines, the chosen ones and more from available, whose
+	 * positions have a union of size bits that removes something from
+	 * another line
+	 *
+	 * @param positions int[] - the positions for each number and line
+	 * @param offset int - the first line of the number in positions
+	 * @param available int - the lines to choose from
+	 * @param from int - the first line to choose
+	 * @param chosen int - the lines chosen so far
+	 * @param union int - the union of the positions chosen so far
+	 * @param size int - the size of the fish
+	 * @return int - the lines chosen, 0 if none or IMPOSSIBLE
+	 */
+	private static int find(int[] positions, int offset, int available, int from,
+			int chosen, int union, int size) {
+		if (Integer.bitCount(chosen) == size) {
+			if (Integer.bitCount(union) < size) {
+				return IMPOSSIBLE;
+			}
+			for (int l = 0; l < 9; l++) {
+				if ((chosen & (1 << l)) == 0 && (positions[offset + l] & union) != 0) {
+					return chosen;
+				}
+			}
+			return 0;
+		}
+		for (int rest = available >>> from << from; rest != 0; rest &= rest - 1) {
+			int l = Integer.numberOfTrailingZeros(rest);
+			int next = union | positions[offset + l];
+			if (Integer.bitCount(next) > size) {
+				continue;
+			}
+			int result = find(positions, offset, available, l + 1, chosen | (1 << l), next, size);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IRule#getScope()
+	 */
+	public int getScope() {
+		// Rows and columns, the blocks are not read
+		return SCOPE_ROW | SCOPE_COLUMN;
+	}
+}
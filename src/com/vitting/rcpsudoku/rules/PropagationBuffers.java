@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules;
+
+import com.vitting.rcpsudoku.model.IHouseRule;
+
+/**
+ * The working memory of a propagation, owned by the caller
+ * <br>
+ * The rules and their PropagationQueue are shared by all threads, the
+ * buffers are not. A search keeps one PropagationBuffers and passes it to
+ * RuleRunner.propagate() at every node, so a node does not allocate.
+ */
+public final class PropagationBuffers {
+
+	// For each rule the dirty cells or houses, two words per rule
+	final long[] dirty;
+
+	// Working memory of the house rules, see IHouseRule.runHouse()
+	final int[] scratch = new int[IHouseRule.SCRATCH_SIZE];
+
+	/**
+	 * Constructor, see RuleRunner.newBuffers()
+	 *
+	 * @param rules int - the number of rules of the queue
+	 */
+	PropagationBuffers(int rules) {
+		dirty = new long[2 * rules];
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules;
+
+import com.vitting.rcpsudoku.model.IHouseRule;
+import com.vitting.rcpsudoku.model.IRule;
+import com.vitting.rcpsudoku.model.IStepListener;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SudokuBase;
+import com.vitting.rcpsudoku.model.SudokuException;
+import com.vitting.rcpsudoku.model.SudokuTopology;
+import com.vitting.rcpsudoku.model.VerifyGameComplete;
+
+import java.util.Arrays;
+
+/**
+ * Run a set of rules until no rule can change the board
+ * <br>
+ * Each rule has a set of dirty cells it must be run on. Changes are taken
+ * from the change journal of the MGrid, a changed cell makes the cells
+ * sharing a house in the scope of the rule dirty for that rule. An
+ * IHouseRule has a set of dirty houses instead, a changed cell makes its
+ * houses in the scope of the rule dirty. A rule with
+ * SCOPE_VALUES_ONLY only sees the cells that got a value. The first
+ * rule with a dirty cell is run next, so the cheap rules run first. The
+ * work done is proportional to the changes, not to the number of sweeps
+ * over the board.
+ * <br>
+ * The tables are fixed when constructed, the dirty sets belong to the
+ * caller, see PropagationBuffers, so a PropagationQueue can be shared by
+ * threads.
+ */
+final class PropagationQueue {
+
+	// All 81 cells as two words, see MGrid.getChanges()
+	private static final long ALL_LOW = -1L;
+	private static final long ALL_HIGH = (1L << (MGrid.SIZE - 64)) - 1;
+
+	// The rows, columns and blocks, the houses of a house rule are kept in
+	// the low word
+	private static final long ROW_HOUSES = 0x1FFL << SudokuTopology.FIRST_ROW_HOUSE;
+	private static final long COLUMN_HOUSES = 0x1FFL << SudokuTopology.FIRST_COLUMN_HOUSE;
+	private static final long BLOCK_HOUSES = 0x1FFL << SudokuTopology.FIRST_BLOCK_HOUSE;
+
+	private static final VerifyGameComplete verifyComplete = new VerifyGameComplete();
+
+	private final IRule[] rules;
+
+	// The rules run per house, null for a rule run per cell
+	private final IHouseRule[] houseRules;
+
+	// For each rule and changed cell, the cells or houses to run the rule on again
+	private final long[][] dependents;
+
+	// For each rule, the first word of the change journal it reads
+	private final int[] journal;
+
+	// For each house rule, the houses in its scope
+	private final long[] scopeHouses;
+
+	/**
+	 * Constructor
+	 *
+	 * @param rules IRule[] - the rules, in the order they are preferred
+	 */
+	PropagationQueue(IRule[] rules) {
+		this.rules = rules;
+		houseRules = new IHouseRule[rules.length];
+		dependents = new long[rules.length][];
+		journal = new int[rules.length];
+		scopeHouses = new long[rules.length];
+		for (int r = 0; r < rules.length; r++) {
+			int scope = rules[r].getScope();
+			if (rules[r] instanceof IHouseRule) {
+				houseRules[r] = (IHouseRule) rules[r];
+				dependents[r] = houseDependents(scope);
+				scopeHouses[r] = ((scope & IRule.SCOPE_ROW) != 0 ? ROW_HOUSES : 0)
+						| ((scope & IRule.SCOPE_COLUMN) != 0 ? COLUMN_HOUSES : 0)
+						| ((scope & IRule.SCOPE_BLOCK) != 0 ? BLOCK_HOUSES : 0);
+			} else {
+				dependents[r] = dependents(scope);
+			}
+			journal[r] = (scope & IRule.SCOPE_VALUES_ONLY) != 0 ? 2 : 0;
+		}
+	}
+
+	/**
+	 * @return PropagationBuffers - buffers for the rules of this queue
+	 */
+	PropagationBuffers newBuffers() {
+		return new PropagationBuffers(rules.length);
+	}
+
+	/**
+	 * Run the rules to a fixpoint
+	 *
+	 * @param base SudokuBase - the game to run on
+	 * @param all boolean - true to run all rules on all cells, false to
+	 *            start from the cells in the change journal
+	 * @param buffers PropagationBuffers - from newBuffers(), not used by another thread
+	 * @return int one of {RULE_NO_CHANGE, RULE_GAME_COMPLETE, RULE_NOT_POSSIBLE}
+	 * @throws SudokuException
+	 */
+	int propagate(SudokuBase base, boolean all, PropagationBuffers buffers) throws SudokuException {
+		return propagate(base, all, null, buffers);
+	}
+
+	/**
+	 * Run the rules to a fixpoint, reporting each step that changed the board
+	 *
+	 * @param base SudokuBase - the game to run on
+	 * @param all boolean - true to run all rules on all cells, false to
+	 *            start from the cells in the change journal
+	 * @param listener IStepListener - told about each change, may be null
+	 * @param buffers PropagationBuffers - from newBuffers(), not used by another thread
+	 * @return int one of {RULE_NO_CHANGE, RULE_GAME_COMPLETE, RULE_NOT_POSSIBLE}
+	 * @throws SudokuException
+	 */
+	int propagate(SudokuBase base, boolean all, IStepListener listener, PropagationBuffers buffers)
+			throws SudokuException {
+		MGrid grid = base.getGrid();
+		long[] dirty = buffers.dirty;
+		// A call that found the board not possible leaves cells dirty
+		Arrays.fill(dirty, 0);
+		if (all) {
+			grid.clearChanges();
+			for (int r = 0; r < rules.length; r++) {
+				if (houseRules[r] != null) {
+					dirty[2 * r] = scopeHouses[r];
+				} else {
+					dirty[2 * r] = ALL_LOW;
+					dirty[2 * r + 1] = ALL_HIGH;
+				}
+			}
+		}
+		while (true) {
+			schedule(grid, dirty);
+
+			// First rule with a dirty cell
+			int r = 0;
+			while (r < rules.length && (dirty[2 * r] | dirty[2 * r + 1]) == 0) {
+				r++;
+			}
+			if (r == rules.length) {
+				break;
+			}
+
+			// Take its lowest dirty cell or house
+			int cell;
+			if (dirty[2 * r] != 0) {
+				cell = Long.numberOfTrailingZeros(dirty[2 * r]);
+				dirty[2 * r] &= dirty[2 * r] - 1;
+			} else {
+				cell = 64 + Long.numberOfTrailingZeros(dirty[2 * r + 1]);
+				dirty[2 * r + 1] &= dirty[2 * r + 1] - 1;
+			}
+			int result;
+			if (houseRules[r] != null) {
+				result = houseRules[r].runHouse(base, cell, buffers.scratch);
+			} else {
+				result = rules[r].runRule(base, base.getCell(cell));
+			}
+			if (result == IRule.RULE_NOT_POSSIBLE) {
+				grid.clearChanges();
+				return IRule.RULE_NOT_POSSIBLE;
+			}
+			if (listener != null && (grid.getChanges(0) | grid.getChanges(1)) != 0) {
+				listener.ruleApplied(rules[r], base);
+			}
+		}
+		// No more changes, check for a solution
+		return verifyComplete.verifyAll(base);
+	}
+
+	// Move the change journal into the dirty sets
+	private void schedule(MGrid grid, long[] dirty) {
+		if ((grid.getChanges(0) | grid.getChanges(1)) == 0) {
+			return;
+		}
+		for (int r = 0; r < rules.length; r++) {
+			long[] table = dependents[r];
+			long low = grid.getChanges(journal[r]);
+			long high = grid.getChanges(journal[r] + 1);
+			for (; low != 0; low &= low - 1) {
+				int cell = Long.numberOfTrailingZeros(low);
+				dirty[2 * r] |= table[2 * cell];
+				dirty[2 * r + 1] |= table[2 * cell + 1];
+			}
+			for (; high != 0; high &= high - 1) {
+				int cell = 64 + Long.numberOfTrailingZeros(high);
+				dirty[2 * r] |= table[2 * cell];
+				dirty[2 * r + 1] |= table[2 * cell + 1];
+			}
+		}
+		grid.clearChanges();
+	}
+
+	// For each cell, the cells sharing a house of the scope with it
+	private static long[] dependents(int scope) {
+		long[] table = new long[2 * MGrid.SIZE];
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			int[] houses = SudokuTopology.houses(cell);
+			for (int h = 0; h < 3; h++) {
+				// houses() is row, column, block like the scope flags
+				if ((scope & (1 << h)) == 0) {
+					continue;
+				}
+				int[] cells = SudokuTopology.house(houses[h]);
+				for (int i = 0; i < 9; i++) {
+					table[2 * cell + (cells[i] >> 6)] |= 1L << cells[i];
+				}
+			}
+		}
+		return table;
+	}
+
+	// For each cell, its houses in the scope
+	private static long[] houseDependents(int scope) {
+		long[] table = new long[2 * MGrid.SIZE];
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			int[] houses = SudokuTopology.houses(cell);
+			for (int h = 0; h < 3; h++) {
+				if ((scope & (1 << h)) != 0) {
+					table[2 * cell] |= 1L << houses[h];
+				}
+			}
+		}
+		return table;
+	}
+}
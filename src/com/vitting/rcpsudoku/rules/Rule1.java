@@ -13,12 +13,13 @@
  */
 package com.vitting.rcpsudoku.rules;
 
-import java.util.BitSet;
-
+import com.vitting.rcpsudoku.model.Candidates;
 import com.vitting.rcpsudoku.model.IRule;
 import com.vitting.rcpsudoku.model.MCell;
+import com.vitting.rcpsudoku.model.MGrid;
 import com.vitting.rcpsudoku.model.SudokuBase;
 import com.vitting.rcpsudoku.model.SudokuException;
+import com.vitting.rcpsudoku.model.SudokuTopology;
 
 /**
  * Rule 1, set all possiblities when all numbers in the same block, row or
@@ -29,51 +30,40 @@ public final class Rule1 implements IRule {
 	/* (non-Javadoc)
 	 * @see com.vitting.sudoku.rules.IRule#runRule(com.vitting.sudoku.comon.MCell)
 	 */
-	public int runRule(MCell cell) throws SudokuException {
+	public int runRule(SudokuBase base, MCell cell) throws SudokuException {
 		
 		// Rule 1 must not run if value is found
 		if (cell.isValueFound()) {
 			return RULE_NO_CHANGE;
 		}
-		SudokuBase base = SudokuBase.getSingleInstance();
-		BitSet result = (BitSet)cell.getValue().clone();
-		int originalBitcount = result.cardinality();
-
-		// Remove numbers from same block
-		MCell[] blockCells = base.getBlocks()
-				.getCells(cell.getBlock());
-		for (int i = 0; i < 9; i++) {
-			if (blockCells[i].isValueFound()) {
-				int x = blockCells[i].getIntValue();
-				result.clear(x);
-			}
-		}
+		MGrid grid = base.getGrid();
+		int original = cell.getMask();
+		int result = original;
 
-		//Remove numbers from same row
-		int row = cell.getRow();
-		for (int i = 0; i < 9; i++) {
-			if (base.getCell(row, i).isValueFound()) {
-				int x = base.getCell(row, i).getIntValue();
-				result.clear(x);
+		// Remove numbers found in the same block, row and column
+		int[] peers = SudokuTopology.peers(cell.getIndex());
+		for (int i = 0; i < SudokuTopology.PEERS; i++) {
+			int peer = grid.get(peers[i]);
+			if (Candidates.isSingle(peer)) {
+				result &= ~peer;
 			}
 		}
-		
-		//Remove numbers from same column
-		int column = cell.getColumn();
-		for (int i = 0; i < 9; i++) {
-			if (base.getCell(i, column).isValueFound()) {
-				int x = base.getCell(i, column).getIntValue();
-				result.clear(x);
-			}
-		}
-		if (result.isEmpty()) {
+		if (result == Candidates.NONE) {
 			return RULE_NOT_POSSIBLE;
 		}
-		cell.setValue(result);
-		if (originalBitcount == result.cardinality()) {
+		cell.setMask(result);
+		if (original == result) {
 			return RULE_NO_CHANGE;
 		} else {
 			return RULE_CELL_CHANGED;
 		}
 	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IRule#getScope()
+	 */
+	public int getScope() {
+		// The values found in all peers of the cell
+		return SCOPE_ALL | SCOPE_VALUES_ONLY;
+	}
 }
@@ -13,43 +13,66 @@
  */
 package com.vitting.rcpsudoku.rules;
 
-import java.util.BitSet;
-
-import com.vitting.rcpsudoku.model.IRule;
-import com.vitting.rcpsudoku.model.MCell;
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.IHouseRule;
+import com.vitting.rcpsudoku.model.MGrid;
 import com.vitting.rcpsudoku.model.SudokuBase;
-import com.vitting.rcpsudoku.model.SudokuException;
+import com.vitting.rcpsudoku.model.SudokuTopology;
 
 /**
- * Rule 2, Check for only 1 possible solution for a number in a block
+ * Rule 2, Check for only 1 possible solution for a number in a row, column
+ * or block
+ * <br>
+ * The candidates of the house are accumulated into a seen once and a seen
+ * twice mask, the numbers seen once and not yet found are hidden singles.
  */
-public final class Rule2 implements IRule {
+public final class Rule2 implements IHouseRule {
 
 	/* (non-Javadoc)
-	 * @see com.vitting.sudoku.rules.IRule#runRule(com.vitting.sudoku.comon.MCell)
+	 * @see com.vitting.rcpsudoku.model.IHouseRule#runHouse(com.vitting.rcpsudoku.model.SudokuBase, int)
 	 */
-	public int runRule(MCell cell) throws SudokuException {
-		if (cell.isValueFound()) {
-			return RULE_NO_CHANGE;
-		}
-		
-		// Check cells in the same block
-		SudokuBase base = SudokuBase.getSingleInstance();
-		MCell[] blockCells = base.getBlocks().getCells(cell.getBlock());
-		BitSet result = (BitSet)cell.getValue().clone();
+	public int runHouse(SudokuBase base, int house) {
+		MGrid grid = base.getGrid();
+		int[] cells = SudokuTopology.house(house);
+		int once = Candidates.NONE;
+		int twice = Candidates.NONE;
+		int found = Candidates.NONE;
 		for (int i = 0; i < 9; i++) {
-			if (blockCells[i] != cell){
-				// Dont knockut bits for the same block
-				result.andNot(blockCells[i].getValue());
+			int mask = grid.get(cells[i]);
+			twice |= once & mask;
+			once |= mask;
+			if (Candidates.isSingle(mask)) {
+				found |= mask;
 			}
 		}
+		if (once != Candidates.ALL) {
+			// A number has no place left in the house
+			return RULE_NOT_POSSIBLE;
+		}
+		int hidden = once & ~twice & ~found;
+		if (hidden == Candidates.NONE) {
+			return RULE_NO_CHANGE;
+		}
 
 		// Only one possible solution
-		if (result.cardinality() == 1) {
-			cell.setValue(result);
-			return RULE_CELL_CHANGED;
-		} else {
-			return RULE_NO_CHANGE;
+		for (int i = 0; i < 9; i++) {
+			int single = grid.get(cells[i]) & hidden;
+			if (single != Candidates.NONE) {
+				if (!Candidates.isSingle(single)) {
+					// Two numbers need the same cell
+					return RULE_NOT_POSSIBLE;
+				}
+				grid.set(cells[i], single);
+			}
 		}
+		return RULE_CELL_CHANGED;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IRule#getScope()
+	 */
+	public int getScope() {
+		// All rows, columns and blocks
+		return SCOPE_ALL;
 	}
 }
@@ -15,6 +15,9 @@ package com.vitting.rcpsudoku.rules;
 
 import com.vitting.rcpsudoku.jfc.utils.Logger;
 import com.vitting.rcpsudoku.model.*;
+import com.vitting.rcpsudoku.rules.cache.CanonicalForm;
+import com.vitting.rcpsudoku.rules.cache.Canonicalizer;
+import com.vitting.rcpsudoku.rules.cache.SolutionCache;
 import com.vitting.rcpsudoku.rules.rule3.Rule3;
 import com.vitting.rcpsudoku.rules.rule4.Rule4;
 
@@ -24,57 +27,116 @@ import com.vitting.rcpsudoku.rules.rule4.Rule4;
 public class RuleRunner implements IRuleExtension {
 
 	static private IRule[] rules = new IRule[]{new Rule1(), new Rule2(),
-			new Rule3()};
+			new Rule3(), new SubsetRule(), new FishRule()};
 
-	static SudokuBase base = SudokuBase.getSingleInstance();
+	// Runs the rules above, shared by all runs
+	static private final PropagationQueue queue = new PropagationQueue(rules);
 
 	private Logger logger;
 
+	// Complete search run when the rules make no more progress
+	private IRuleExtension search;
+
+	// Solutions of earlier puzzles, null if not used
+	private SolutionCache cache;
+
+	private Canonicalizer canonicalizer;
+
+	private final int[] masks = new int[MGrid.SIZE];
+
 	/**
-	 * Constructor
+	 * Constructor, Rule 4 is used as search
 	 */
 	public RuleRunner(Logger logger) {
+		this(logger, new Rule4(logger));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param logger Logger
+	 * @param search IRuleExtension - the search run in place of Rule 4, e.g. DlxRule
+	 */
+	public RuleRunner(Logger logger, IRuleExtension search) {
 		this.logger = logger;
+		this.search = search;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param logger Logger
+	 * @param search IRuleExtension - the search run in place of Rule 4, e.g. DlxRule
+	 * @param cache SolutionCache - looked up before solving, may be shared by runners
+	 */
+	public RuleRunner(Logger logger, IRuleExtension search, SolutionCache cache) {
+		this(logger, search);
+		this.cache = cache;
+		this.canonicalizer = new Canonicalizer();
+	}
+
+	/**
+	 * Run the rules on all cells of base until no more changes
+	 *
+	 * @param base SudokuBase - the game to run on
+	 * @return int one of {RULE_NO_CHANGE, RULE_GAME_COMPLETE, RULE_NOT_POSSIBLE}
+	 * @throws SudokuException
+	 */
+	public static int internalrun(SudokuBase base) throws SudokuException {
+		return queue.propagate(base, true, queue.newBuffers());
+	}
+
+	/**
+	 * Run the rules on all cells of base until no more changes, reporting
+	 * each step that changed the board
+	 *
+	 * @param base SudokuBase - the game to run on
+	 * @param listener IStepListener - told about each change
+	 * @return int one of {RULE_NO_CHANGE, RULE_GAME_COMPLETE, RULE_NOT_POSSIBLE}
+	 * @throws SudokuException
+	 */
+	public static int internalrun(SudokuBase base, IStepListener listener) throws SudokuException {
+		return queue.propagate(base, true, listener, queue.newBuffers());
+	}
+
+	/**
+	 * Run the rules on base until no more changes, starting from the cells
+	 * changed since the last run
+	 * <br>
+	 * Only valid when the rest of the board has been run before, e.g. after
+	 * a search has set a value on a board returned by internalrun().
+	 *
+	 * @param base SudokuBase - the game to run on
+	 * @param buffers PropagationBuffers - from newBuffers(), kept by the caller
+	 * @return int one of {RULE_NO_CHANGE, RULE_GAME_COMPLETE, RULE_NOT_POSSIBLE}
+	 * @throws SudokuException
+	 */
+	public static int propagate(SudokuBase base, PropagationBuffers buffers) throws SudokuException {
+		return queue.propagate(base, false, buffers);
+	}
+
+	/**
+	 * @return PropagationBuffers - the working memory of propagate(), one per thread
+	 */
+	public static PropagationBuffers newBuffers() {
+		return queue.newBuffers();
 	}
 
 	/*
 	 * (non-Javadoc)
 	 *
-	 * @see com.vitting.rcpsudoku.model.IRuleExtension#run()
+	 * @see com.vitting.rcpsudoku.model.IRuleExtension#run(com.vitting.rcpsudoku.model.SudokuBase)
 	 */
-	public static int internalrun() throws SudokuException {
-		int result = IRule.RULE_NO_CHANGE;
-		runrun:
-		while (true) {
-			for (int i = 0; i < rules.length; i++) {
-				result = runRule(i);
-//				{ // DEBUG -- Rule 1 - 3 result
-//				  System.out.println("Rule " + i + " " + result);
-//				}
-				switch (result) {
-					case IRule.RULE_CELL_CHANGED:
-						continue runrun;
-					case IRule.RULE_NOT_POSSIBLE:
-						break runrun;
-					default:
-						// No more changes, check for a solution
-						if (new VerifyGameComplete().verifyAll() == IRule.RULE_GAME_COMPLETE) {
-							result = IRule.RULE_GAME_COMPLETE;
-							break runrun;
-						}
-				}
-			}
-			break;
-		}
-		return result;
+	public int run(SudokuBase base) throws SudokuException {
+		return run(base, new SolveContext());
 	}
 
 	/*
 	 * (non-Javadoc)
 	 *
-	 * @see com.vitting.rcpsudoku.model.IRuleExtension#run()
+	 * @see com.vitting.rcpsudoku.model.IRuleExtension#run(com.vitting.rcpsudoku.model.SudokuBase, com.vitting.rcpsudoku.model.SolveContext)
 	 */
-	public int run() throws SudokuException {
+	public int run(SudokuBase base, SolveContext context) throws SudokuException {
 		int result = IRule.RULE_NO_CHANGE;
 
 		try {
@@ -87,16 +149,29 @@ public class RuleRunner implements IRuleExtension {
 			// Save game onto stack
 			base.pushStack();
 
-			// Run rules 1 - 3
-			result = internalrun();
+			// Repeated and isomorphic puzzles are answered from the cache
+			CanonicalForm form = null;
+			if (cache != null) {
+				base.getGrid().copyTo(masks);
+				form = canonicalizer.canonicalize(masks);
+				if (form != null && cache.get(form, masks)) {
+					base.getGrid().copyFrom(masks);
+					logger.logEvent("RuleRunner: solution from cache");
+					return IRule.RULE_GAME_COMPLETE;
+				}
+			}
+
+			// Run the propagation
+			result = internalrun(base);
 
 			switch (result) {
 				case IRule.RULE_NO_CHANGE:
 					// Call VerifyGame()
-					new VerifyGame().verifyAll(false);
+					new VerifyGame().verifyAll(base, false);
 
-					// Run rule 4
-					result = new Rule4(logger).run();
+					// Run rule 4 or the selected search, the propagation always finishes
+					result = context.isExceeded() ? IRule.RULE_BUDGET_EXCEEDED
+							: search.run(base, context);
 					break;
 				case IRule.RULE_CELL_CHANGED:
 					throw new SudokuException(
@@ -107,6 +182,10 @@ public class RuleRunner implements IRuleExtension {
 				default:
 					// IRule.RULE_GAME_COMPLETE:
 			}
+			if (form != null && result == IRule.RULE_GAME_COMPLETE) {
+				base.getGrid().copyTo(masks);
+				cache.put(form, masks);
+			}
 			return result;
 		} finally {
 			base.clearStack();
@@ -118,35 +197,4 @@ public class RuleRunner implements IRuleExtension {
 		}
 	}
 
-	/**
-	 * Run a rule on all the cells
-	 * 
-	 * @param i -
-	 *            rule number to run
-	 * @return int one of {RULE_NO_CHANGE, RULE_CELL_CHANGED,
-	 *         RULE_GAME_COMPLETE, RULE_NOT_POSSIBLE}
-	 * @throws SudokuException
-	 */
-	static private int runRule(int i) throws SudokuException {
-		int retValue = IRule.RULE_NO_CHANGE;
-		IRule rule = rules[i];
-
-		// Call all the cell elements with rule
-		for (int x = 0; x < 9; x++) {
-			for (int y = 0; y < 9; y++) {
-				int result = rule.runRule(base.getCell(x, y));
-				switch (result) {
-				case IRule.RULE_CELL_CHANGED:
-					retValue = IRule.RULE_CELL_CHANGED;
-					break;
-				case IRule.RULE_NOT_POSSIBLE:
-					return IRule.RULE_NOT_POSSIBLE;
-				default:
-					// Do nothing
-				}
-			}
-		}
-		return retValue;
-	}
-
 }
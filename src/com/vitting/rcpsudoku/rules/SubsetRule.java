@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules;
+
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.IHouseRule;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SudokuBase;
+import com.vitting.rcpsudoku.model.SudokuTopology;
+
+import java.util.Arrays;
+
+/**
+ * Subset rule, naked and hidden pairs, triples and quads in a house
+ * <br>
+ * Naked: when n cells together hold only n numbers, those numbers are
+ * removed from the other cells of the house. Hidden: when n numbers are only
+ * possible in n cells, the other numbers are removed from those cells.
+ * <br>
+ * The house is held as a 9 x 9 bit matrix in the scratch of the caller, for
+ * each position the numbers possible and for each number the positions
+ * possible. A hidden subset is a naked subset of the transposed matrix, so
+ * the same search finds both.
+ * With n unsolved cells a naked subset of size k is the same elimination as
+ * a hidden subset of size n - k, so subsets up to n / 2 are searched.
+ */
+public final class SubsetRule implements IHouseRule {
+
+	// Largest subset searched, larger subsets have a smaller complement
+	private static final int MAX_SIZE = 4;
+
+	// Returned by find() when n sets share fewer than n elements
+	private static final int IMPOSSIBLE = -1;
+
+	// The matrix rows in scratch
+	private static final int BY_POSITION = 0;
+	private static final int BY_NUMBER = 9;
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IHouseRule#runHouse(com.vitting.rcpsudoku.model.SudokuBase, int)
+	 */
+	public int runHouse(SudokuBase base, int house) {
+		return runHouse(base, house, new int[SCRATCH_SIZE]);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IHouseRule#runHouse(com.vitting.rcpsudoku.model.SudokuBase, int, int[])
+	 */
+	public int runHouse(SudokuBase base, int house, int[] scratch) {
+		MGrid grid = base.getGrid();
+		int[] cells = SudokuTopology.house(house);
+
+		// Numbers found and positions not solved
+		int found = Candidates.NONE;
+		int open = 0;
+		for (int p = 0; p < 9; p++) {
+			int mask = grid.get(cells[p]);
+			if (Candidates.isSingle(mask)) {
+				found |= mask;
+			} else {
+				open |= 1 << p;
+			}
+		}
+		int numbers = Candidates.ALL & ~found;
+		int unsolved = Integer.bitCount(open);
+		if (unsolved < 4) {
+			// Left to the hidden singles of Rule 2
+			return RULE_NO_CHANGE;
+		}
+
+		// For each open position the numbers, for each number the positions
+		Arrays.fill(scratch, BY_POSITION, BY_NUMBER + 9, 0);
+		for (int p = 0; p < 9; p++) {
+			if ((open & (1 << p)) != 0) {
+				int mask = grid.get(cells[p]) & numbers;
+				scratch[BY_POSITION + p] = mask;
+				for (int rest = mask; rest != 0; rest &= rest - 1) {
+					scratch[BY_NUMBER + Integer.numberOfTrailingZeros(rest)] |= 1 << p;
+				}
+			}
+		}
+
+		for (int size = 2; size <= MAX_SIZE && 2 * size <= unsolved; size++) {
+			// Naked, remove the numbers of the subset from the other positions
+			int chosen = find(scratch, BY_POSITION, open, 0, 0, 0, size);
+			if (chosen == IMPOSSIBLE) {
+				return RULE_NOT_POSSIBLE;
+			}
+			if (chosen != 0) {
+				int subset = union(scratch, BY_POSITION, chosen);
+				for (int p = 0; p < 9; p++) {
+					if ((open & ~chosen & (1 << p)) != 0) {
+						int mask = grid.get(cells[p]) & ~subset;
+						if (mask == Candidates.NONE) {
+							return RULE_NOT_POSSIBLE;
+						}
+						grid.set(cells[p], mask);
+					}
+				}
+				return RULE_CELL_CHANGED;
+			}
+
+			// Hidden, remove the other numbers from the positions of the subset
+			chosen = find(scratch, BY_NUMBER, numbers, 0, 0, 0, size);
+			if (chosen == IMPOSSIBLE) {
+				return RULE_NOT_POSSIBLE;
+			}
+			if (chosen != 0) {
+				int positions = union(scratch, BY_NUMBER, chosen);
+				for (int p = 0; p < 9; p++) {
+					if ((positions & (1 << p)) != 0) {
+						grid.set(cells[p], grid.get(cells[p]) & chosen);
+					}
+				}
+				return RULE_CELL_CHANGED;
+			}
+		}
+		return RULE_NO_CHANGE;
+	}
+
+	/**
+	 * Find size rows of the matrix, among available, whose union has size
+	 * bits and that removes something from another available row
+	 *
+	 * @param rows int[] - the matrix
+	 * @param offset int - the first row of the matrix in rows
+	 * @param available int - the rows to choose from
+	 * @param from int - the first row to choose
+	 * @param chosen int - the rows chosen so far
+	 * @param union int - the union of the rows chosen so far
+	 * @param size int - the size of the subset
+	 * @return int - the rows chosen, 0 if none or IMPOSSIBLE
+	 */
+	private static int find(int[] rows, int offset, int available, int from, int chosen, int union,
+			int size) {
+		if (Integer.bitCount(chosen) == size) {
+			if (Integer.bitCount(union) < size) {
+				return IMPOSSIBLE;
+			}
+			for (int rest = available & ~chosen; rest != 0; rest &= rest - 1) {
+				if ((rows[offset + Integer.numberOfTrailingZeros(rest)] & union) != 0) {
+					return chosen;
+				}
+			}
+			return 0;
+		}
+		for (int rest = available >>> from << from; rest != 0; rest &= rest - 1) {
+			int row = Integer.numberOfTrailingZeros(rest);
+			int next = union | rows[offset + row];
+			if (Integer.bitCount(next) > size) {
+				continue;
+			}
+			int result = find(rows, offset, available, row + 1, chosen | (1 << row), next, size);
+			if (result != 0) {
+				return result;
+			}
+		}
+		return 0;
+	}
+
+	private static int union(int[] rows, int offset, int chosen) {
+		int union = 0;
+		for (int rest = chosen; rest != 0; rest &= rest - 1) {
+			union |= rows[offset + Integer.numberOfTrailingZeros(rest)];
+		}
+		return union;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IRule#getScope()
+	 */
+	public int getScope() {
+		// All rows, columns and blocks
+		return SCOPE_ALL;
+	}
+}
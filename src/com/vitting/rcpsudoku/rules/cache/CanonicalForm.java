@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules.cache;
+
+import com.vitting.rcpsudoku.model.MGrid;
+
+/**
+ * A puzzle in canonical form, the key and the transformation from the
+ * puzzle to it
+ * <br>
+ * Row r of the canonical board is row rowOrder[r] of the puzzle, or column
+ * rowOrder[r] if the puzzle is transposed, and likewise for the columns.
+ * Value v of the puzzle is value labels[v] of the canonical board. Boards
+ * with candidates, such as a solution, are mapped both ways with
+ * toCanonical() and fromCanonical().
+ */
+public final class CanonicalForm {
+
+	private final CanonicalKey key;
+
+	// For each canonical cell, the cell of the puzzle
+	private final int[] source = new int[MGrid.SIZE];
+
+	// Value (0 - 8) of the puzzle to value of the canonical board, and back
+	private final int[] labels = new int[9];
+
+	private final int[] values = new int[9];
+
+	/**
+	 * Constructor
+	 *
+	 * @param key CanonicalKey - the canonical board
+	 * @param transposed boolean - true if the rows of the canonical board are columns of the puzzle
+	 * @param rowOrder int[9] - the row of the puzzle for each canonical row
+	 * @param columnOrder int[9] - the column of the puzzle for each canonical column
+	 * @param labels int[10] - the canonical value 1 - 9 of each value 1 - 9 of the puzzle, index 0 unused
+	 */
+	CanonicalForm(CanonicalKey key, boolean transposed, int[] rowOrder, int[] columnOrder, int[] labels) {
+		this.key = key;
+		for (int row = 0; row < 9; row++) {
+			for (int column = 0; column < 9; column++) {
+				source[row * 9 + column] = transposed ? columnOrder[column] * 9 + rowOrder[row]
+						: rowOrder[row] * 9 + columnOrder[column];
+			}
+		}
+		for (int value = 0; value < 9; value++) {
+			this.labels[value] = labels[value + 1] - 1;
+			values[labels[value + 1] - 1] = value;
+		}
+	}
+
+	/**
+	 * @return CanonicalKey - the canonical board, the same for all isomorphic puzzles
+	 */
+	public CanonicalKey getKey() {
+		return key;
+	}
+
+	/**
+	 * Map a board of the puzzle to the canonical board
+	 *
+	 * @param masks int[81] - candidate masks in the puzzle orientation
+	 * @param target int[81] - receives the canonical candidate masks
+	 */
+	public void toCanonical(int[] masks, int[] target) {
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			target[i] = relabel(masks[source[i]], labels);
+		}
+	}
+
+	/**
+	 * Map a canonical board back to the puzzle
+	 *
+	 * @param masks int[81] - canonical candidate masks
+	 * @param target int[81] - receives the candidate masks in the puzzle orientation
+	 */
+	public void fromCanonical(int[] masks, int[] target) {
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			target[source[i]] = relabel(masks[i], values);
+		}
+	}
+
+	private static int relabel(int mask, int[] map) {
+		int result = 0;
+		for (int m = mask; m != 0; m &= m - 1) {
+			result |= 1 << map[Integer.numberOfTrailingZeros(m)];
+		}
+		return result;
+	}
+}
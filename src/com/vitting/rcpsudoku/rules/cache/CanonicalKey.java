@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules.cache;
+
+import com.vitting.rcpsudoku.model.MGrid;
+
+import java.util.Arrays;
+
+/**
+ * The canonical form of a puzzle as a value, equal for all puzzles that are
+ * the same up to the Sudoku symmetries
+ * <br>
+ * The 81 cells of the canonical board are packed 16 to a long, 4 bits each,
+ * 0 for an empty cell and 1 - 9 for a value.
+ */
+public final class CanonicalKey {
+
+	private static final int CELLS_PER_WORD = 16;
+
+	private final long[] words;
+
+	private final long hash;
+
+	/**
+	 * Constructor
+	 *
+	 * @param cells int[81] - the canonical board, 0 for empty or 1 - 9
+	 */
+	CanonicalKey(int[] cells) {
+		words = new long[(MGrid.SIZE + CELLS_PER_WORD - 1) / CELLS_PER_WORD];
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			words[i / CELLS_PER_WORD] |= (long) cells[i] << (4 * (i % CELLS_PER_WORD));
+		}
+		long h = 0;
+		for (long word : words) {
+			h = mix(h ^ word);
+		}
+		hash = h;
+	}
+
+	/**
+	 * @return long - a 64 bit hash of the canonical form
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * @param index int - cell index of the canonical board, row * 9 + column
+	 * @return int - 0 for an empty cell or the value 1 - 9
+	 */
+	public int getCell(int index) {
+		return (int) (words[index / CELLS_PER_WORD] >>> (4 * (index % CELLS_PER_WORD))) & 0xF;
+	}
+
+	public boolean equals(Object other) {
+		return other instanceof CanonicalKey && Arrays.equals(words, ((CanonicalKey) other).words);
+	}
+
+	public int hashCode() {
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * @return String - the canonical board in line format, '.' for empty
+	 */
+	public String toString() {
+		StringBuilder builder = new StringBuilder(MGrid.SIZE);
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			int value = getCell(i);
+			builder.append(value == 0 ? '.' : (char) ('0' + value));
+		}
+		return builder.toString();
+	}
+
+	// The finalizer of SplittableRandom
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules.cache;
+
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.MGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Find the canonical form of a puzzle under the Sudoku symmetries
+ * <br>
+ * The symmetries are transposition, the order of the bands and of the rows
+ * in each band, the order of the stacks and of the columns in each stack,
+ * and relabeling of the values. The canonical form is the smallest board in
+ * row major order, with the values labeled 1 - 9 in the order they are first
+ * seen and empty cells after all values. The first row is therefore a row
+ * with the most values, which leaves few transformations to try.
+ * <br>
+ * The board is built one row at a time. All transformations that give the
+ * smallest rows so far are kept, each as a transposition, the rows chosen so
+ * far, one of the 1296 column orders and the labels given so far. A board
+ * with very few values, which is left unchanged by many transformations, is
+ * given up after MAX_STATES of them and has no canonical form. An instance
+ * is not thread safe.
+ */
+public final class Canonicalizer {
+
+	/** Most transformations kept while building the canonical board */
+	public static final int MAX_STATES = 1 << 16;
+
+	// Label of an empty cell while comparing rows, after all values
+	private static final int EMPTY = 15;
+
+	// The 1296 column orders, the stacks permuted and the columns in each stack
+	private static final int[][] COLUMN_ORDERS = new int[1296][9];
+
+	// The 6 orders of 3 things
+	private static final int[][] PERMUTATIONS = { { 0, 1, 2 }, { 0, 2, 1 }, { 1, 0, 2 }, { 1, 2, 0 },
+			{ 2, 0, 1 }, { 2, 1, 0 } };
+
+	static {
+		int index = 0;
+		for (int[] stacks : PERMUTATIONS) {
+			for (int[] first : PERMUTATIONS) {
+				for (int[] second : PERMUTATIONS) {
+					for (int[] third : PERMUTATIONS) {
+						int[][] inStack = { first, second, third };
+						int[] order = COLUMN_ORDERS[index++];
+						for (int column = 0; column < 9; column++) {
+							order[column] = stacks[column / 3] * 3 + inStack[column / 3][column % 3];
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// The board, 0 for empty or 1 - 9, as given and transposed
+	private final int[][] cells = new int[2][MGrid.SIZE];
+
+	// The canonical board, 4 bits per cell, one long per row
+	private final long[] rows = new long[9];
+
+	private List<State> states = new ArrayList<>();
+
+	private List<State> next = new ArrayList<>();
+
+	private final int[] scratch = new int[10];
+
+	/**
+	 * Find the canonical form of a board
+	 * <br>
+	 * A cell with a single candidate is a value, all other cells are empty.
+	 *
+	 * @param masks int[81] - candidate masks
+	 * @return CanonicalForm - null if a cell has no candidates or the board
+	 *         has too many symmetries
+	 */
+	public CanonicalForm canonicalize(int[] masks) {
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			int mask = masks[i];
+			if (mask == Candidates.NONE) {
+				return null;
+			}
+			int value = Candidates.isSingle(mask) ? Candidates.lowest(mask) + 1 : 0;
+			cells[0][i] = value;
+			cells[1][(i % 9) * 9 + i / 9] = value;
+		}
+		states.clear();
+		if (!firstRow()) {
+			return null;
+		}
+		for (int level = 1; level < 9; level++) {
+			if (!nextRow(level)) {
+				return null;
+			}
+		}
+
+		State best = states.get(0);
+		int label = best.nextLabel;
+		for (int value = 1; value <= 9; value++) {
+			if (best.labels[value] == 0) {
+				best.labels[value] = label++;
+			}
+		}
+		int[] canonical = new int[MGrid.SIZE];
+		for (int row = 0; row < 9; row++) {
+			for (int column = 0; column < 9; column++) {
+				int cell = (int) (rows[row] >>> (4 * (8 - column))) & 0xF;
+				canonical[row * 9 + column] = cell == EMPTY ? 0 : cell;
+			}
+		}
+		return new CanonicalForm(new CanonicalKey(canonical), best.transposed == 1, best.rowOrder,
+				COLUMN_ORDERS[best.columnOrder], best.labels);
+	}
+
+	// The first row, for the first row only the empty cells matter. The
+	// column orders giving the smallest pattern are built directly, the
+	// stacks by descending number of values and the empty cells last in
+	// each stack.
+	private boolean firstRow() {
+		int best = Integer.MAX_VALUE;
+		int[] smallest = new int[18];
+		for (int t = 0; t < 2; t++) {
+			for (int row = 0; row < 9; row++) {
+				smallest[t * 9 + row] = smallestPattern(t, row);
+				best = Math.min(best, smallest[t * 9 + row]);
+			}
+		}
+		int[] stackPatterns = new int[3];
+		for (int t = 0; t < 2; t++) {
+			for (int row = 0; row < 9; row++) {
+				if (smallest[t * 9 + row] != best) {
+					continue;
+				}
+				for (int stacks = 0; stacks < 6; stacks++) {
+					// The stacks in this order must give the smallest pattern
+					boolean smallestOrder = true;
+					for (int stack = 0; stack < 3 && smallestOrder; stack++) {
+						int from = PERMUTATIONS[stacks][stack] * 3;
+						int count = 0;
+						for (int column = from; column < from + 3; column++) {
+							count += cells[t][row * 9 + column] == 0 ? 1 : 0;
+						}
+						stackPatterns[stack] = (1 << count) - 1;
+						smallestOrder = stackPatterns[stack] == ((best >> (3 * (2 - stack))) & 7);
+					}
+					if (smallestOrder && !addFirstRows(t, row, stacks, stackPatterns)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	// All orders of the columns in the stacks with the empty cells first
+	private boolean addFirstRows(int t, int row, int stacks, int[] stackPatterns) {
+		for (int order = stacks * 216; order < stacks * 216 + 216; order++) {
+			boolean smallestOrder = true;
+			for (int stack = 0; stack < 3 && smallestOrder; stack++) {
+				int pattern = 0;
+				for (int i = 0; i < 3; i++) {
+					pattern = (pattern << 1) | (cells[t][row * 9 + COLUMN_ORDERS[order][stack * 3 + i]] == 0 ? 1 : 0);
+				}
+				smallestOrder = pattern == stackPatterns[stack];
+			}
+			if (smallestOrder) {
+				if (states.size() == MAX_STATES) {
+					return false;
+				}
+				State state = new State(t, order);
+				rows[0] = state.add(cells[t], row, 0);
+				states.add(state);
+			}
+		}
+		return true;
+	}
+
+	// The rows after the first, a new band may use any unused band
+	private boolean nextRow(int level) {
+		long best = Long.MAX_VALUE;
+		for (State state : states) {
+			for (int choices = candidates(state, level); choices != 0; choices &= choices - 1) {
+				int row = Integer.numberOfTrailingZeros(choices);
+				best = Math.min(best, state.value(cells[state.transposed], row, scratch));
+			}
+		}
+		next.clear();
+		for (State state : states) {
+			for (int choices = candidates(state, level); choices != 0; choices &= choices - 1) {
+				int row = Integer.numberOfTrailingZeros(choices);
+				if (state.value(cells[state.transposed], row, scratch) == best) {
+					if (next.size() == MAX_STATES) {
+						return false;
+					}
+					State child = new State(state);
+					child.add(cells[state.transposed], row, level);
+					next.add(child);
+				}
+			}
+		}
+		rows[level] = best;
+		List<State> swap = states;
+		states = next;
+		next = swap;
+		return true;
+	}
+
+	// The rows that may be canonical row level, as a mask
+	private static int candidates(State state, int level) {
+		if (level % 3 == 0) {
+			int result = 0;
+			for (int band = 0; band < 3; band++) {
+				if ((state.usedBands & (1 << band)) == 0) {
+					result |= 7 << (band * 3);
+				}
+			}
+			return result;
+		}
+		int band = state.rowOrder[level - 1] / 3;
+		return (7 << (band * 3)) & ~state.usedRows;
+	}
+
+	// The smallest pattern of a row over all column orders, a bit for each
+	// empty cell, the stacks with most values first and the empty cells last
+	// in each stack
+	private int smallestPattern(int t, int row) {
+		int[] counts = new int[3];
+		for (int column = 0; column < 9; column++) {
+			if (cells[t][row * 9 + column] == 0) {
+				counts[column / 3]++;
+			}
+		}
+		Arrays.sort(counts);
+		int pattern = 0;
+		for (int count : counts) {
+			pattern = (pattern << 3) | ((1 << count) - 1);
+		}
+		return pattern;
+	}
+
+	/**
+	 * One transformation giving the smallest rows so far
+	 */
+	private static final class State {
+
+		private final int transposed;
+
+		private final int columnOrder;
+
+		private final int[] rowOrder;
+
+		// Canonical label of each value, 0 if not seen yet
+		private final int[] labels;
+
+		private int nextLabel;
+
+		private int usedRows;
+
+		private int usedBands;
+
+		State(int transposed, int columnOrder) {
+			this.transposed = transposed;
+			this.columnOrder = columnOrder;
+			rowOrder = new int[9];
+			labels = new int[10];
+			nextLabel = 1;
+		}
+
+		State(State parent) {
+			transposed = parent.transposed;
+			columnOrder = parent.columnOrder;
+			rowOrder = parent.rowOrder.clone();
+			labels = parent.labels.clone();
+			nextLabel = parent.nextLabel;
+			usedRows = parent.usedRows;
+			usedBands = parent.usedBands;
+		}
+
+		// The canonical row if row is chosen next, labels is scratch space
+		long value(int[] cells, int row, int[] labels) {
+			System.arraycopy(this.labels, 0, labels, 0, 10);
+			return value(cells, row, labels, nextLabel);
+		}
+
+		// Choose row as canonical row level, label its new values
+		long add(int[] cells, int row, int level) {
+			rowOrder[level] = row;
+			usedRows |= 1 << row;
+			usedBands |= 1 << (row / 3);
+			long value = value(cells, row, labels, nextLabel);
+			for (int label : labels) {
+				nextLabel = Math.max(nextLabel, label + 1);
+			}
+			return value;
+		}
+
+		private long value(int[] cells, int row, int[] labels, int nextLabel) {
+			int[] order = COLUMN_ORDERS[columnOrder];
+			long value = 0;
+			for (int column = 0; column < 9; column++) {
+				int cell = cells[row * 9 + order[column]];
+				int label = EMPTY;
+				if (cell != 0) {
+					label = labels[cell];
+					if (label == 0) {
+						label = nextLabel++;
+						labels[cell] = label;
+					}
+				}
+				value = (value << 4) | label;
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules.cache;
+
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.MGrid;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Solutions of solved puzzles by canonical form, the least recently used
+ * are dropped when the cache is full
+ * <br>
+ * A solution is kept in the canonical orientation and labels, so a puzzle
+ * that is the same up to the Sudoku symmetries as a solved one is answered
+ * with its solution mapped back. The cache may be shared by threads.
+ */
+public final class SolutionCache {
+
+	private final Map<CanonicalKey, byte[]> solutions;
+
+	private final int[] canonical = new int[MGrid.SIZE];
+
+	private long hits;
+
+	private long misses;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity int - the most solutions kept
+	 */
+	public SolutionCache(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		solutions = new LinkedHashMap<CanonicalKey, byte[]>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<CanonicalKey, byte[]> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Look up the solution of a puzzle
+	 * <br>
+	 * The solution is only used if it fits the candidates of the board, a
+	 * board where candidates were removed by hand may not have it.
+	 *
+	 * @param form CanonicalForm - the canonical form of the board
+	 * @param masks int[81] - the candidate masks of the board, receives the
+	 *              solution if found
+	 * @return boolean - true if a solution was found
+	 */
+	public synchronized boolean get(CanonicalForm form, int[] masks) {
+		byte[] solution = solutions.get(form.getKey());
+		if (solution != null) {
+			for (int i = 0; i < MGrid.SIZE; i++) {
+				canonical[i] = Candidates.bit(solution[i]);
+			}
+			int[] mapped = new int[MGrid.SIZE];
+			form.fromCanonical(canonical, mapped);
+			boolean fits = true;
+			for (int i = 0; i < MGrid.SIZE && fits; i++) {
+				fits = (masks[i] & mapped[i]) != 0;
+			}
+			if (fits) {
+				System.arraycopy(mapped, 0, masks, 0, MGrid.SIZE);
+				hits++;
+				return true;
+			}
+		}
+		misses++;
+		return false;
+	}
+
+	/**
+	 * Keep the solution of a puzzle
+	 *
+	 * @param form CanonicalForm - the canonical form of the puzzle
+	 * @param masks int[81] - the solved board, ignored unless all cells have a single candidate
+	 */
+	public synchronized void put(CanonicalForm form, int[] masks) {
+		form.toCanonical(masks, canonical);
+		byte[] solution = new byte[MGrid.SIZE];
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			if (!Candidates.isSingle(canonical[i])) {
+				return;
+			}
+			solution[i] = (byte) Candidates.lowest(canonical[i]);
+		}
+		solutions.put(form.getKey(), solution);
+	}
+
+	/**
+	 * @return int - the number of solutions kept
+	 */
+	public synchronized int size() {
+		return solutions.size();
+	}
+
+	/**
+	 * @return long - lookups answered from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return long - lookups not answered from the cache
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized String toString() {
+		return "Cache size: " + solutions.size() + " hits: " + hits + " misses: " + misses;
+	}
+}
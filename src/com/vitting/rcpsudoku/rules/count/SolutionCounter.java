@@ -0,0 +1,413 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules.count;
+
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SudokuBase;
+
+import java.util.List;
+
+/**
+ * Count the solutions of a board, up to a limit
+ * <br>
+ * A limit of 2 answers the question if a puzzle is unique. The search stops
+ * as soon as the limit is reached.
+ * <br>
+ * For each number the possible positions are kept as 3 bands of 27 bits, a
+ * band is 3 rows and cell index c is bit c % 27 of band c / 27. Placing a
+ * value clears a few masks, the naked singles of a band are found for all
+ * cells at once by counting the numbers bit sliced, and the hidden singles
+ * by looking at the row, column and block masks of each number. When
+ * nothing is left to place the unsolved cell with the fewest candidates is
+ * tried, one saved copy of the 30 masks per level. All arrays are allocated
+ * once, an instance is not thread safe.
+ */
+public final class SolutionCounter {
+
+	private static final int BANDS = 3;
+
+	private static final int BAND_ALL = (1 << 27) - 1;
+
+	private static final int ROW_BITS = 0x1FF;
+
+	// Words of saved state per level, the positions then the solved cells
+	private static final int STATE = 9 * BANDS + BANDS;
+
+	// For each bit of a band, the other cells of its row and block
+	private static final int[] BAND_PEERS = new int[27];
+
+	// For each column, its 3 cells in a band
+	private static final int[] BAND_COLUMN = new int[9];
+
+	// For each block of a band, its 9 cells
+	private static final int[] BAND_BLOCK = new int[3];
+
+	static {
+		for (int i = 0; i < 27; i++) {
+			for (int j = 0; j < 27; j++) {
+				if (j != i && (j / 9 == i / 9 || (j % 9) / 3 == (i % 9) / 3)) {
+					BAND_PEERS[i] |= 1 << j;
+				}
+			}
+		}
+		for (int column = 0; column < 9; column++) {
+			BAND_COLUMN[column] = (1 << column) | (1 << (column + 9)) | (1 << (column + 18));
+		}
+		for (int block = 0; block < 3; block++) {
+			BAND_BLOCK[block] = (7 << (3 * block)) | (7 << (9 + 3 * block)) | (7 << (18 + 3 * block));
+		}
+	}
+
+	// Positions of each number, index number * 3 + band, then the cells
+	// solved in each band
+	private final int[] state = new int[STATE];
+
+	private static final int SOLVED = 9 * BANDS;
+
+	// Number of cells placed on the current board
+	private int placed;
+
+	// The search stack, per level the cell tried, the numbers not yet tried
+	// and the board before the try
+	private final int[] stepCell = new int[MGrid.SIZE];
+	private final int[] stepRemaining = new int[MGrid.SIZE];
+	private final int[] stepPlaced = new int[MGrid.SIZE];
+	private final int[] stepState = new int[MGrid.SIZE * STATE];
+
+	private long nodes;
+
+	/**
+	 * Count the solutions of a board
+	 *
+	 * @param base SudokuBase - the board, not changed
+	 * @param limit int - stop when this number of solutions is found
+	 * @return int - the number of solutions, at most limit
+	 */
+	public int count(SudokuBase base, int limit) {
+		int[] masks = new int[MGrid.SIZE];
+		base.getGrid().copyTo(masks);
+		return count(masks, limit, null);
+	}
+
+	/**
+	 * Count the solutions of a board
+	 *
+	 * @param masks int[81] - the candidate masks, not changed
+	 * @param limit int - stop when this number of solutions is found
+	 * @return int - the number of solutions, at most limit
+	 */
+	public int count(int[] masks, int limit) {
+		return count(masks, limit, null);
+	}
+
+	/**
+	 * Count the solutions of a board and collect them
+	 *
+	 * @param masks int[81] - the candidate masks, not changed
+	 * @param limit int - stop when this number of solutions is found
+	 * @param solutions List - receives an int[81] of single candidate masks
+	 *                  for each solution found, may be null
+	 * @return int - the number of solutions, at most limit
+	 */
+	public int count(int[] masks, int limit, List<int[]> solutions) {
+		nodes = 0;
+		if (limit <= 0 || !load(masks) || !propagate()) {
+			return 0;
+		}
+		int found = 0;
+		int depth = 0;
+		while (true) {
+			if (placed == MGrid.SIZE) {
+				found++;
+				if (solutions != null) {
+					solutions.add(solution());
+				}
+				if (found >= limit) {
+					return found;
+				}
+			} else {
+				// Try the cell with the fewest candidates
+				int cell = selectCell();
+				stepCell[depth] = cell;
+				stepRemaining[depth] = candidates(cell);
+				stepPlaced[depth] = placed;
+				System.arraycopy(state, 0, stepState, depth * STATE, STATE);
+				depth++;
+			}
+
+			// Next number of the deepest level, step back when exhausted
+			boolean descend = false;
+			while (depth > 0 && !descend) {
+				int top = depth - 1;
+				int remaining = stepRemaining[top];
+				if (remaining == Candidates.NONE) {
+					depth--;
+					continue;
+				}
+				stepRemaining[top] = remaining & (remaining - 1);
+				System.arraycopy(stepState, top * STATE, state, 0, STATE);
+				placed = stepPlaced[top];
+				nodes++;
+				place(Integer.numberOfTrailingZeros(remaining), stepCell[top]);
+				descend = propagate();
+			}
+			if (!descend) {
+				return found;
+			}
+		}
+	}
+
+	/**
+	 * @param masks int[81] - the candidate masks, not changed
+	 * @return boolean - true if the board has exactly one solution
+	 */
+	public boolean isUnique(int[] masks) {
+		return count(masks, 2, null) == 1;
+	}
+
+	/**
+	 * @return long - the number of values tried by the last count
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	private boolean load(int[] masks) {
+		for (int i = 0; i < STATE; i++) {
+			state[i] = 0;
+		}
+		placed = 0;
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			int mask = masks[cell] & Candidates.ALL;
+			if (mask == Candidates.NONE) {
+				return false;
+			}
+			int band = cell / 27;
+			int bit = 1 << (cell - 27 * band);
+			for (; mask != 0; mask &= mask - 1) {
+				state[3 * Integer.numberOfTrailingZeros(mask) + band] |= bit;
+			}
+		}
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			int mask = masks[cell] & Candidates.ALL;
+			if (Candidates.isSingle(mask)) {
+				int number = Integer.numberOfTrailingZeros(mask);
+				int band = cell / 27;
+				if ((state[3 * number + band] & (1 << (cell - 27 * band))) == 0) {
+					// Removed by an earlier value in the same house
+					return false;
+				}
+				place(number, cell);
+			}
+		}
+		return true;
+	}
+
+	// Place number in cell, the number must be possible in the cell
+	private void place(int number, int cell) {
+		int band = cell / 27;
+		int i = cell - 27 * band;
+		int bit = 1 << i;
+		for (int n = band; n < SOLVED; n += BANDS) {
+			state[n] &= ~bit;
+		}
+		int first = 3 * number;
+		state[first + band] = (state[first + band] & ~BAND_PEERS[i]) | bit;
+		int column = BAND_COLUMN[i % 9];
+		for (int other = 0; other < BANDS; other++) {
+			if (other != band) {
+				state[first + other] &= ~column;
+			}
+		}
+		state[SOLVED + band] |= bit;
+		placed++;
+	}
+
+	// Place the naked and hidden singles, false on a contradiction
+	private boolean propagate() {
+		while (true) {
+			int result = nakedSingles();
+			if (result < 0) {
+				return false;
+			}
+			if (result > 0) {
+				continue;
+			}
+			if (placed == MGrid.SIZE) {
+				return true;
+			}
+			result = hiddenSingles();
+			if (result < 0) {
+				return false;
+			}
+			if (result == 0) {
+				return true;
+			}
+		}
+	}
+
+	// Place the cells with one candidate, the number placed or -1
+	private int nakedSingles() {
+		int count = 0;
+		for (int band = 0; band < BANDS; band++) {
+			int once = 0;
+			int twice = 0;
+			for (int n = band; n < SOLVED; n += BANDS) {
+				twice |= once & state[n];
+				once |= state[n];
+			}
+			int open = ~state[SOLVED + band] & BAND_ALL;
+			if ((open & ~once) != 0) {
+				// A cell without candidates
+				return -1;
+			}
+			for (int singles = open & once & ~twice; singles != 0; singles &= singles - 1) {
+				int bit = singles & -singles;
+				int number = 0;
+				while (number < 9 && (state[3 * number + band] & bit) == 0) {
+					number++;
+				}
+				if (number == 9) {
+					// Taken by a value placed in this loop
+					return -1;
+				}
+				place(number, 27 * band + Integer.numberOfTrailingZeros(bit));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// Place the numbers with one position in a house, the number placed or -1
+	private int hiddenSingles() {
+		int count = 0;
+		for (int number = 0; number < 9; number++) {
+			int first = 3 * number;
+
+			// Rows and blocks
+			for (int band = 0; band < BANDS; band++) {
+				for (int shift = 0; shift < 27; shift += 9) {
+					int row = (state[first + band] >>> shift) & ROW_BITS;
+					if ((row & (state[SOLVED + band] >>> shift)) != 0) {
+						// Placed in this row
+						continue;
+					}
+					if (row == 0) {
+						return -1;
+					}
+					if ((row & (row - 1)) == 0) {
+						place(number, 27 * band + shift + Integer.numberOfTrailingZeros(row));
+						count++;
+					}
+				}
+				for (int block = 0; block < 3; block++) {
+					int cells = state[first + band] & BAND_BLOCK[block];
+					if ((cells & state[SOLVED + band]) != 0) {
+						continue;
+					}
+					if (cells == 0) {
+						return -1;
+					}
+					if ((cells & (cells - 1)) == 0) {
+						place(number, 27 * band + Integer.numberOfTrailingZeros(cells));
+						count++;
+					}
+				}
+			}
+
+			// Columns, the 9 rows folded into seen once and seen twice masks
+			int once = 0;
+			int twice = 0;
+			int done = 0;
+			for (int band = 0; band < BANDS; band++) {
+				int positions = state[first + band];
+				int solved = positions & state[SOLVED + band];
+				for (int shift = 0; shift < 27; shift += 9) {
+					int row = (positions >>> shift) & ROW_BITS;
+					twice |= once & row;
+					once |= row;
+					done |= (solved >>> shift) & ROW_BITS;
+				}
+			}
+			if (once != ROW_BITS) {
+				return -1;
+			}
+			for (int hidden = once & ~twice & ~done; hidden != 0; hidden &= hidden - 1) {
+				int column = Integer.numberOfTrailingZeros(hidden);
+				int band = 0;
+				while (band < BANDS && (state[first + band] & BAND_COLUMN[column]) == 0) {
+					band++;
+				}
+				if (band == BANDS) {
+					// Taken by a value placed in this loop
+					return -1;
+				}
+				place(number, 27 * band + Integer.numberOfTrailingZeros(state[first + band] & BAND_COLUMN[column]));
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// The unsolved cell with the fewest candidates
+	private int selectCell() {
+		// Counting the numbers bit sliced finds a cell with two at once
+		for (int band = 0; band < BANDS; band++) {
+			int ones = 0;
+			int twos = 0;
+			int more = 0;
+			for (int n = band; n < SOLVED; n += BANDS) {
+				more |= twos & state[n];
+				twos |= ones & state[n];
+				ones |= state[n];
+			}
+			int pairs = twos & ~more & ~state[SOLVED + band];
+			if (pairs != 0) {
+				return 27 * band + Integer.numberOfTrailingZeros(pairs);
+			}
+		}
+		int best = -1;
+		int bestCount = 10;
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			int count = Integer.bitCount(candidates(cell));
+			if (count > 1 && count < bestCount) {
+				best = cell;
+				bestCount = count;
+			}
+		}
+		return best;
+	}
+
+	// Candidate mask of a cell
+	private int candidates(int cell) {
+		int band = cell / 27;
+		int bit = 1 << (cell - 27 * band);
+		int mask = Candidates.NONE;
+		for (int number = 0; number < 9; number++) {
+			if ((state[3 * number + band] & bit) != 0) {
+				mask |= Candidates.bit(number);
+			}
+		}
+		return mask;
+	}
+
+	private int[] solution() {
+		int[] masks = new int[MGrid.SIZE];
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			masks[cell] = candidates(cell);
+		}
+		return masks;
+	}
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules.dlx;
+
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SolveContext;
+import com.vitting.rcpsudoku.model.SudokuTopology;
+
+/**
+ * Algorithm X with dancing links for the Sudoku exact cover problem
+ * <br>
+ * The 324 columns are the cell, row, column and block constraints and each
+ * of the 729 rows places one number in one cell. The matrix is built once in
+ * preallocated int arrays, load() restores it from the template and search()
+ * runs without recursion or allocation. An instance is not thread safe.
+ */
+public final class DancingLinks {
+
+	// Constraint columns: 81 cells, 81 row/number, 81 column/number, 81 block/number
+	private static final int COLUMNS = 4 * MGrid.SIZE;
+
+	// Matrix rows: cell * 9 + number
+	private static final int ROWS = 9 * MGrid.SIZE;
+
+	// Node 0 is the root, 1 - 324 the column headers, then 4 nodes per matrix row
+	private static final int FIRST_NODE = COLUMNS + 1;
+
+	private static final int NODES = FIRST_NODE + 4 * ROWS;
+
+	// The links of the full matrix, copied into the working arrays on load
+	private static final int[] TEMPLATE_LEFT = new int[NODES];
+	private static final int[] TEMPLATE_RIGHT = new int[NODES];
+	private static final int[] TEMPLATE_UP = new int[NODES];
+	private static final int[] TEMPLATE_DOWN = new int[NODES];
+	private static final int[] TEMPLATE_SIZE = new int[COLUMNS + 1];
+
+	// Column header and matrix row of each node, never changed
+	private static final int[] COLUMN = new int[NODES];
+	private static final int[] ROW = new int[NODES];
+
+	static {
+		for (int c = 0; c <= COLUMNS; c++) {
+			TEMPLATE_LEFT[c] = c == 0 ? COLUMNS : c - 1;
+			TEMPLATE_RIGHT[c] = c == COLUMNS ? 0 : c + 1;
+			TEMPLATE_UP[c] = c;
+			TEMPLATE_DOWN[c] = c;
+			COLUMN[c] = c;
+			ROW[c] = -1;
+		}
+		for (int row = 0; row < ROWS; row++) {
+			int cell = row / 9;
+			int number = row % 9;
+			int[] columns = {
+					1 + cell,
+					1 + MGrid.SIZE + SudokuTopology.row(cell) * 9 + number,
+					1 + 2 * MGrid.SIZE + SudokuTopology.column(cell) * 9 + number,
+					1 + 3 * MGrid.SIZE + SudokuTopology.block(cell) * 9 + number };
+			int first = FIRST_NODE + 4 * row;
+			for (int j = 0; j < 4; j++) {
+				int node = first + j;
+				int column = columns[j];
+				COLUMN[node] = column;
+				ROW[node] = row;
+				TEMPLATE_LEFT[node] = first + (j + 3) % 4;
+				TEMPLATE_RIGHT[node] = first + (j + 1) % 4;
+				// Append at the bottom of the column
+				TEMPLATE_UP[node] = TEMPLATE_UP[column];
+				TEMPLATE_DOWN[node] = column;
+				TEMPLATE_DOWN[TEMPLATE_UP[column]] = node;
+				TEMPLATE_UP[column] = node;
+				TEMPLATE_SIZE[column]++;
+			}
+		}
+	}
+
+	private final int[] left = new int[NODES];
+	private final int[] right = new int[NODES];
+	private final int[] up = new int[NODES];
+	private final int[] down = new int[NODES];
+	private final int[] size = new int[COLUMNS + 1];
+
+	// Rows fixed by the loaded board
+	private final int[] givens = new int[MGrid.SIZE];
+	private int givenCount;
+
+	// The search stack, one chosen node per level
+	private final int[] choice = new int[MGrid.SIZE];
+
+	// The first solution found by search
+	private final int[] solution = new int[MGrid.SIZE];
+
+	private long nodes;
+
+	// Set when the last search ran out of budget
+	private boolean exceeded;
+
+	/**
+	 * Load a board into the matrix
+	 *
+	 * @param masks int[81] - candidate mask for each cell, a single candidate is a fixed value
+	 * @return false if the board has a cell without candidates or conflicting values
+	 */
+	public boolean load(int[] masks) {
+		System.arraycopy(TEMPLATE_LEFT, 0, left, 0, NODES);
+		System.arraycopy(TEMPLATE_RIGHT, 0, right, 0, NODES);
+		System.arraycopy(TEMPLATE_UP, 0, up, 0, NODES);
+		System.arraycopy(TEMPLATE_DOWN, 0, down, 0, NODES);
+		System.arraycopy(TEMPLATE_SIZE, 0, size, 0, COLUMNS + 1);
+		givenCount = 0;
+		nodes = 0;
+		exceeded = false;
+
+		// Remove the rows for numbers that are not candidates
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			int mask = masks[cell] & Candidates.ALL;
+			if (mask == Candidates.NONE) {
+				return false;
+			}
+			for (int number = 0; number < 9; number++) {
+				if (!Candidates.contains(mask, number)) {
+					removeRow(FIRST_NODE + 4 * (cell * 9 + number));
+				}
+			}
+		}
+
+		// Select the rows of the fixed values
+		for (int cell = 0; cell < MGrid.SIZE; cell++) {
+			int mask = masks[cell];
+			if (Candidates.isSingle(mask)) {
+				int first = FIRST_NODE + 4 * (cell * 9 + Candidates.lowest(mask));
+				for (int j = 0; j < 4; j++) {
+					int column = COLUMN[first + j];
+					if (right[left[column]] != column) {
+						// Constraint already satisfied by another fixed value
+						return false;
+					}
+				}
+				for (int j = 0; j < 4; j++) {
+					cover(COLUMN[first + j]);
+				}
+				givens[givenCount++] = ROW[first];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Search the loaded matrix
+	 * <br>
+	 * The first solution found is available from getSolution()
+	 *
+	 * @param limit int - stop when this number of solutions is found
+	 * @return int - the number of solutions found, at most limit
+	 */
+	public int search(int limit) {
+		return search(limit, null);
+	}
+
+	/**
+	 * Search the loaded matrix within a budget
+	 * <br>
+	 * The first solution found is available from getSolution(), when the
+	 * budget runs out the search stops and isExceeded() is true.
+	 *
+	 * @param limit int - stop when this number of solutions is found
+	 * @param context SolveContext - the budget, null for none
+	 * @return int - the number of solutions found, at most limit
+	 */
+	public int search(int limit, SolveContext context) {
+		exceeded = false;
+		int found = 0;
+		int depth = 0;
+		boolean advance = true;
+		while (true) {
+			if (advance) {
+				nodes++;
+				if ((nodes & (SolveContext.CHECK_INTERVAL - 1)) == 0 && context != null
+						&& context.charge(SolveContext.CHECK_INTERVAL)) {
+					exceeded = true;
+					return found;
+				}
+				if (right[0] == 0) {
+					// All constraints covered
+					if (found == 0) {
+						storeSolution(depth);
+					}
+					found++;
+					if (found >= limit) {
+						return found;
+					}
+					advance = false;
+				} else {
+					int column = selectColumn();
+					if (size[column] == 0) {
+						advance = false;
+					} else {
+						cover(column);
+						int node = down[column];
+						choice[depth++] = node;
+						coverRow(node);
+						continue;
+					}
+				}
+			}
+
+			// Backtrack to the next alternative
+			if (depth == 0) {
+				return found;
+			}
+			int node = choice[--depth];
+			uncoverRow(node);
+			int column = COLUMN[node];
+			node = down[node];
+			if (node != column) {
+				choice[depth++] = node;
+				coverRow(node);
+				advance = true;
+			} else {
+				uncover(column);
+			}
+		}
+	}
+
+	/**
+	 * @return int[81] - the candidate masks of the first solution found by search
+	 */
+	public int[] getSolution() {
+		return solution;
+	}
+
+	/**
+	 * @return boolean - true if the last search stopped on its budget
+	 */
+	public boolean isExceeded() {
+		return exceeded;
+	}
+
+	/**
+	 * @return long - the number of search nodes visited since load
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	// Column with the fewest remaining rows
+	private int selectColumn() {
+		int best = right[0];
+		int bestSize = size[best];
+		for (int c = right[best]; c != 0 && bestSize > 1; c = right[c]) {
+			if (size[c] < bestSize) {
+				best = c;
+				bestSize = size[c];
+			}
+		}
+		return best;
+	}
+
+	private void storeSolution(int depth) {
+		for (int i = 0; i < givenCount; i++) {
+			solution[givens[i] / 9] = Candidates.bit(givens[i] % 9);
+		}
+		for (int i = 0; i < depth; i++) {
+			int row = ROW[choice[i]];
+			solution[row / 9] = Candidates.bit(row % 9);
+		}
+	}
+
+	// Cover the other columns of the row containing node
+	private void coverRow(int node) {
+		for (int j = right[node]; j != node; j = right[j]) {
+			cover(COLUMN[j]);
+		}
+	}
+
+	private void uncoverRow(int node) {
+		for (int j = left[node]; j != node; j = left[j]) {
+			uncover(COLUMN[j]);
+		}
+	}
+
+	private void cover(int column) {
+		right[left[column]] = right[column];
+		left[right[column]] = left[column];
+		for (int i = down[column]; i != column; i = down[i]) {
+			for (int j = right[i]; j != i; j = right[j]) {
+				up[down[j]] = up[j];
+				down[up[j]] = down[j];
+				size[COLUMN[j]]--;
+			}
+		}
+	}
+
+	private void uncover(int column) {
+		for (int i = up[column]; i != column; i = up[i]) {
+			for (int j = left[i]; j != i; j = left[j]) {
+				size[COLUMN[j]]++;
+				up[down[j]] = j;
+				down[up[j]] = j;
+			}
+		}
+		right[left[column]] = column;
+		left[right[column]] = column;
+	}
+
+	// Take all nodes of a row out of their columns, only used while loading
+	private void removeRow(int first) {
+		for (int j = 0; j < 4; j++) {
+			int node = first + j;
+			up[down[node]] = up[node];
+			down[up[node]] = down[node];
+			size[COLUMN[node]]--;
+		}
+	}
+}
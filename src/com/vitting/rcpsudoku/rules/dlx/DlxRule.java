@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules.dlx;
+
+import com.vitting.rcpsudoku.jfc.utils.Logger;
+import com.vitting.rcpsudoku.model.IRule;
+import com.vitting.rcpsudoku.model.IRuleExtension;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SolveContext;
+import com.vitting.rcpsudoku.model.SudokuBase;
+import com.vitting.rcpsudoku.model.SudokuException;
+
+/**
+ * Complete search using dancing links, can be used by RuleRunner in place
+ * of Rule 4
+ * <br>
+ * The current candidates of the board restrict the exact cover matrix, the
+ * first solution found is written back into the board.
+ */
+public final class DlxRule implements IRuleExtension {
+
+	private final Logger logger;
+
+	private final DancingLinks links = new DancingLinks();
+
+	private final int[] masks = new int[MGrid.SIZE];
+
+	/**
+	 * Constructor
+	 *
+	 * @param logger Logger
+	 */
+	public DlxRule(Logger logger) {
+		this.logger = logger;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IRuleExtension#run(com.vitting.rcpsudoku.model.SudokuBase)
+	 */
+	public int run(SudokuBase base) throws SudokuException {
+		return run(base, null);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IRuleExtension#run(com.vitting.rcpsudoku.model.SudokuBase, com.vitting.rcpsudoku.model.SolveContext)
+	 */
+	public int run(SudokuBase base, SolveContext context) throws SudokuException {
+		MGrid grid = base.getGrid();
+		grid.copyTo(masks);
+		if (!links.load(masks) || links.search(1, context) == 0) {
+			if (links.isExceeded()) {
+				logger.logEvent("DlxRule: budget exceeded, nodes: " + links.getNodes());
+				return IRule.RULE_BUDGET_EXCEEDED;
+			}
+			logger.logEvent("DlxRule: no solution, nodes: " + links.getNodes());
+			return IRule.RULE_NOT_POSSIBLE;
+		}
+		grid.copyFrom(links.getSolution());
+		logger.logEvent("DlxRule: solved, nodes: " + links.getNodes());
+		return IRule.RULE_GAME_COMPLETE;
+	}
+}
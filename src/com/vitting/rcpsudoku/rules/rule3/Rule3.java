@@ -13,126 +13,164 @@
  */
 package com.vitting.rcpsudoku.rules.rule3;
 
-import com.vitting.rcpsudoku.model.IRule;
-import com.vitting.rcpsudoku.model.MCell;
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.IHouseRule;
+import com.vitting.rcpsudoku.model.MGrid;
 import com.vitting.rcpsudoku.model.SudokuBase;
-
-import java.util.BitSet;
+import com.vitting.rcpsudoku.model.SudokuTopology;
 
 /**
  * Rule 3, If a number is found in only 1 row or column of a block, remove all
- * possibilities for that number in the same row or column in all other blocks.
+ * possibilities for that number in the same row or column in all other blocks
+ * (pointing). If a number is found in only 1 block of a row or column, remove
+ * all possibilities for that number in the other rows or columns of the
+ * block (claiming).
+ * <br>
+ * A block is split in 3 row and 3 column segments of 3 cells, a row or column
+ * in the 3 segments crossing a block. The candidates of each segment are
+ * OR'ed into a mask, the numbers in one segment only are locked to it. All
+ * numbers are handled at once and all eliminations are made in one pass.
  */
-public class Rule3 implements IRule {
+public class Rule3 implements IHouseRule {
 
 	/* (non-Javadoc)
-	 * @see com.vitting.sudoku.rules.IRule#runRule(com.vitting.sudoku.comon.MCell)
+	 * @see com.vitting.rcpsudoku.model.IHouseRule#runHouse(com.vitting.rcpsudoku.model.SudokuBase, int)
 	 */
-	public int runRule(MCell cell) {
-		int returnResult = RULE_NO_CHANGE;
-
-		// Check holder.getCell()s in the same block
-		if (cell.isValueFound()) {
-			// Dont run on completed holder.getCell()s
-			return returnResult;
+	public int runHouse(SudokuBase base, int house) {
+		MGrid grid = base.getGrid();
+		if (house >= SudokuTopology.FIRST_BLOCK_HOUSE) {
+			int block = house - SudokuTopology.FIRST_BLOCK_HOUSE;
+			int firstRow = (block / 3) * 3;
+			int firstColumn = (block % 3) * 3;
+			// Row segments, then column segments
+			int result = pointing(grid, firstRow, firstColumn, 9, 1);
+			if (result == RULE_NOT_POSSIBLE) {
+				return result;
+			}
+			return merge(result, pointing(grid, firstColumn, firstRow, 1, 9));
+		} else if (house >= SudokuTopology.FIRST_COLUMN_HOUSE) {
+			return claiming(grid, house - SudokuTopology.FIRST_COLUMN_HOUSE, 1, 9);
+		} else {
+			return claiming(grid, house - SudokuTopology.FIRST_ROW_HOUSE, 9, 1);
 		}
-		ScanRowDataHolder holder = generateScanRowDataHolder(cell);
-		// Scan row
-		returnResult = scanRow(holder);
-		if (returnResult != RULE_NO_CHANGE)
-			return returnResult;
-
-		// Scan column
-		returnResult = scanColumn(holder);
-		return returnResult;
 	}
 
-	private ScanRowDataHolder generateScanRowDataHolder(MCell cell) {
-		SudokuBase base = SudokuBase.getSingleInstance();
-		int block = cell.getBlock();
-		MCell[] blockCells = base.getBlocks().getCells(block);
-		int firstRow = blockCells[0].getRow(); // First row in block
-		int firstColumn = blockCells[0].getColumn(); // First column in block
-		return new ScanRowDataHolder(base, cell, firstRow, firstColumn);
-	}
-
-	private int scanRow(ScanRowDataHolder holder) {
-		BitSet value = new BitSet(9);
-		// Only if holder.getCell() is in first column of block
-		if ((holder.getCell().getColumn() == holder.getFirstColumn())) {
-
-			// Gather all holder.getCell() values in block row
-			for (int colmn = holder.getFirstColumn(); colmn < holder.getFirstColumn() + 3; colmn++) {
-				value.or(holder.getBase().getCell(holder.getCell().getRow(), colmn).getValue());
+	/**
+	 * Remove the numbers locked to a segment of a block from the rest of the
+	 * line through the segment
+	 * <br>
+	 * Cell (line, position) is at index line * lineStep + position * step,
+	 * so the same code handles the rows (9, 1) and the columns (1, 9).
+	 *
+	 * @param grid MGrid
+	 * @param firstLine int - the first line through the block
+	 * @param firstPosition int - the first position of the block on the lines
+	 * @param lineStep int - index distance between lines
+	 * @param step int - index distance between positions on a line
+	 * @return int one of {RULE_NO_CHANGE, RULE_CELL_CHANGED, RULE_NOT_POSSIBLE}
+	 */
+	private int pointing(MGrid grid, int firstLine, int firstPosition, int lineStep, int step) {
+		int first = segment(grid, firstLine * lineStep + firstPosition * step, step);
+		int second = segment(grid, (firstLine + 1) * lineStep + firstPosition * step, step);
+		int third = segment(grid, (firstLine + 2) * lineStep + firstPosition * step, step);
+		int result = RULE_NO_CHANGE;
+		for (int i = 0; i < 3; i++) {
+			int locked = locked(i, first, second, third);
+			if (locked == Candidates.NONE) {
+				continue;
 			}
-
-			// Remove value found in other rows in same block
-			for (int row = holder.getFirstRow(); row < holder.getFirstRow() + 3; row++) {
-				if (holder.getCell().getRow() != row) {
-					// Dont use own row
-					for (int column = holder.getFirstColumn(); column < holder.getFirstColumn() + 3; column++) {
-						value.andNot(holder.getBase().getCell(row, column).getValue());
-					}
+			int start = (firstLine + i) * lineStep;
+			for (int position = 0; position < 9; position++) {
+				if (position - firstPosition >= 0 && position - firstPosition < 3) {
+					// Dont process same block
+					continue;
 				}
-			}
-
-			if (value.cardinality() > 0) {
-				// knock off matching numbers in same row in other blocks, rule returns true if any found
-				for (int colmn = 0; colmn < 9; colmn++) {
-					MCell targetCell = holder.getBase().getCell(holder.getCell().getRow(), colmn);
-					if (targetCell.getBlock() != holder.getCell().getBlock()) {
-						// Dont process same block
-						if (targetCell.getValue().intersects(value)) {
-							targetCell.getValue().andNot(value);
-							if (!targetCell.isPossible()) {
-								return RULE_NOT_POSSIBLE;
-							}
-							return RULE_CELL_CHANGED;
-						}
-					}
+				result = merge(result, remove(grid, start + position * step, locked));
+				if (result == RULE_NOT_POSSIBLE) {
+					return result;
 				}
 			}
-
 		}
-		return RULE_NO_CHANGE;
+		return result;
 	}
 
-	private int scanColumn(ScanRowDataHolder holder) {
-		BitSet value = new BitSet(9);
-		// Only if holder.getCell() is in first row of block
-		if ((holder.getCell().getRow() == holder.getFirstRow())) {
-
-			// Gather all values in block column
-			for (int row = holder.getFirstRow(); row < holder.getFirstRow() + 3; row++) {
-				value.or(holder.getBase().getCell(row, holder.getCell().getColumn()).getValue());
+	/**
+	 * Remove the numbers of a line locked to one block from the rest of the
+	 * block
+	 *
+	 * @param grid MGrid
+	 * @param line int - the row or column
+	 * @param lineStep int - index distance between lines
+	 * @param step int - index distance between positions on a line
+	 * @return int one of {RULE_NO_CHANGE, RULE_CELL_CHANGED, RULE_NOT_POSSIBLE}
+	 */
+	private int claiming(MGrid grid, int line, int lineStep, int step) {
+		int first = segment(grid, line * lineStep, step);
+		int second = segment(grid, line * lineStep + 3 * step, step);
+		int third = segment(grid, line * lineStep + 6 * step, step);
+		int firstLine = (line / 3) * 3;
+		int result = RULE_NO_CHANGE;
+		for (int i = 0; i < 3; i++) {
+			int locked = locked(i, first, second, third);
+			if (locked == Candidates.NONE) {
+				continue;
 			}
-
-			// Remove value found in other columns in same block
-			for (int column = holder.getFirstColumn(); column < holder.getFirstColumn() + 3; column++) {
-				if (holder.getCell().getColumn() != column) {
-					// Dont use own column
-					for (int row = holder.getFirstRow(); row < holder.getFirstRow() + 3; row++) {
-						value.andNot(holder.getBase().getCell(row, column).getValue());
-					}
+			for (int other = firstLine; other < firstLine + 3; other++) {
+				if (other == line) {
+					// Dont process same line
+					continue;
 				}
-			}
-			if (value.cardinality() > 0) {
-				// knock off matching numbers in same column in other blocks, rule returns true if any found
-				for (int row = 0; row < 9; row++) {
-					MCell targetCell = holder.getBase().getCell(row, holder.getCell().getColumn());
-					if (targetCell.getBlock() != holder.getCell().getBlock()) {
-						// Dont process same block
-						if (targetCell.getValue().intersects(value)) {
-							targetCell.getValue().andNot(value);
-							if (!targetCell.isPossible()) {
-								return RULE_NOT_POSSIBLE;
-							}
-							return RULE_CELL_CHANGED;
-						}
+				for (int position = 3 * i; position < 3 * i + 3; position++) {
+					result = merge(result, remove(grid, other * lineStep + position * step, locked));
+					if (result == RULE_NOT_POSSIBLE) {
+						return result;
 					}
 				}
 			}
 		}
-		return RULE_NO_CHANGE;
+		return result;
+	}
+
+	// The candidates of the 3 cells from index
+	private static int segment(MGrid grid, int index, int step) {
+		return grid.get(index) | grid.get(index + step) | grid.get(index + 2 * step);
+	}
+
+	// The numbers of segment i in neither of the other two
+	private static int locked(int i, int first, int second, int third) {
+		switch (i) {
+			case 0:
+				return first & ~second & ~third;
+			case 1:
+				return second & ~first & ~third;
+			default:
+				return third & ~first & ~second;
+		}
+	}
+
+	// Remove numbers from the cell
+	private static int remove(MGrid grid, int index, int numbers) {
+		int mask = grid.get(index);
+		if ((mask & numbers) == Candidates.NONE) {
+			return RULE_NO_CHANGE;
+		}
+		mask &= ~numbers;
+		if (mask == Candidates.NONE) {
+			return RULE_NOT_POSSIBLE;
+		}
+		grid.set(index, mask);
+		return RULE_CELL_CHANGED;
+	}
+
+	private static int merge(int result, int next) {
+		return next == RULE_NO_CHANGE ? result : next;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IRule#getScope()
+	 */
+	public int getScope() {
+		// Blocks for pointing, rows and columns for claiming
+		return SCOPE_ALL;
 	}
 }
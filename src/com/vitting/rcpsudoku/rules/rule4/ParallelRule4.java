@@ -0,0 +1,286 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ * <p>
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * <p>
+ * Contributors:
+ * Henning Vitting - Initial API and implementation
+ */
+package com.vitting.rcpsudoku.rules.rule4;
+
+import com.vitting.rcpsudoku.jfc.utils.Logger;
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.IRule;
+import com.vitting.rcpsudoku.model.IRuleExtension;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SolveContext;
+import com.vitting.rcpsudoku.model.SudokuBase;
+import com.vitting.rcpsudoku.model.SudokuException;
+import com.vitting.rcpsudoku.model.VerifyGame;
+import com.vitting.rcpsudoku.rules.PropagationBuffers;
+import com.vitting.rcpsudoku.rules.RuleRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rule 4 with the top levels of the thread explored in parallel
+ * <br>
+ * Down to the split depth every value of the selected cell becomes a
+ * ForkJoin task with its own copy of the board. Below the split depth each
+ * task runs the normal Rule 4 search. The first task to find a solution
+ * cancels the others, the solution is written back into the board. A task
+ * that fails also cancels the others, run() then throws its exception. All
+ * tasks share the SolveContext of the run, when it runs out the tasks stop.
+ * The tasks also share one TranspositionTable, a board one task found
+ * without a solution is skipped by the others.
+ */
+public final class ParallelRule4 implements IRuleExtension {
+
+    private final Logger logger;
+
+    private final ForkJoinPool pool;
+
+    private final int splitDepth;
+
+    // Boards without a solution, shared by the tasks of a run
+    private final TranspositionTable deadEnds = new TranspositionTable(TranspositionTable.DEFAULT_CAPACITY);
+
+    private ParallelStatistics statistics = new ParallelStatistics();
+
+    /**
+     * Constructor, using the common pool
+     *
+     * @param logger Logger
+     * @param splitDepth int - the number of levels split into tasks
+     */
+    public ParallelRule4(Logger logger, int splitDepth) {
+        this(logger, ForkJoinPool.commonPool(), splitDepth);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param logger Logger
+     * @param pool ForkJoinPool - runs the tasks
+     * @param splitDepth int - the number of levels split into tasks
+     */
+    public ParallelRule4(Logger logger, ForkJoinPool pool, int splitDepth) {
+        if (splitDepth < 0) {
+            throw new IllegalArgumentException("splitDepth must not be negative: " + splitDepth);
+        }
+        this.logger = logger;
+        this.pool = pool;
+        this.splitDepth = splitDepth;
+    }
+
+    /* (non-Javadoc)
+     * @see com.vitting.rcpsudoku.model.IRuleExtension#run(com.vitting.rcpsudoku.model.SudokuBase)
+     */
+    public int run(SudokuBase base) throws SudokuException {
+        return run(base, new SolveContext());
+    }
+
+    /* (non-Javadoc)
+     * @see com.vitting.rcpsudoku.model.IRuleExtension#run(com.vitting.rcpsudoku.model.SudokuBase, com.vitting.rcpsudoku.model.SolveContext)
+     */
+    public int run(SudokuBase base, SolveContext context) throws SudokuException {
+        MGrid grid = base.getGrid();
+        int[] masks = new int[MGrid.SIZE];
+        grid.copyTo(masks);
+
+        // Dead ends of earlier puzzles would make this run depend on them
+        deadEnds.clear();
+        Search search = new Search(context, deadEnds);
+        long steals = pool.getStealCount();
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new BranchTask(search, masks, 0));
+        } catch (RuntimeException e) {
+            throw new SudokuException("Parallel Rule 4 failed", e);
+        }
+        if (search.failure.get() != null) {
+            throw search.failure.get();
+        }
+        statistics = search.statistics;
+        statistics.finish(System.nanoTime() - start, pool.getStealCount() - steals,
+                pool.getParallelism());
+
+        int[] solution = search.solution.get();
+        //DEBUG -- Parallel Rule 4 returned
+        logger.logEvent("Parallel Rule 4 " + (solution == null ? "found no solution, " : "solved, ")
+                + statistics);
+        if (solution == null) {
+            return context.isExceeded() ? IRule.RULE_BUDGET_EXCEEDED : IRule.RULE_NOT_POSSIBLE;
+        }
+        grid.copyFrom(solution);
+        return IRule.RULE_GAME_COMPLETE;
+    }
+
+    /**
+     * @return ParallelStatistics - the counters of the last run
+     */
+    public ParallelStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * The state shared by all tasks of one run
+     */
+    private static class Search {
+
+        final SolveContext context;
+
+        final AtomicReference<int[]> solution = new AtomicReference<>();
+
+        // Set when a task found the solution or failed, cancels the others
+        final AtomicBoolean stopped = new AtomicBoolean();
+
+        // The first internal failure of a task, rethrown by run()
+        final AtomicReference<SudokuException> failure = new AtomicReference<>();
+
+        final ParallelStatistics statistics = new ParallelStatistics();
+
+        // A board and a Rule 4 for each pool thread
+        final ThreadLocal<Worker> worker;
+
+        Search(SolveContext context, TranspositionTable deadEnds) {
+            this.context = context;
+            worker = ThreadLocal.withInitial(() -> new Worker(stopped, deadEnds));
+        }
+
+        // True when the tasks must stop
+        boolean isStopped() {
+            return stopped.get() || context.isExceeded();
+        }
+
+        void publish(MGrid grid) {
+            int[] masks = new int[MGrid.SIZE];
+            grid.copyTo(masks);
+            if (solution.compareAndSet(null, masks)) {
+                stopped.set(true);
+            }
+        }
+
+        void fail(SudokuException e) {
+            failure.compareAndSet(null, e);
+            stopped.set(true);
+        }
+    }
+
+    /**
+     * The board and propagation buffers used by the tasks on one pool thread
+     * <br>
+     * A task is done with the board before it joins its children, so a
+     * child run by the same thread while joining may reuse it.
+     */
+    private static class Worker {
+
+        final SudokuBase base = new SudokuBase();
+
+        final Rule4 rule4;
+
+        final VerifyGame verify = new VerifyGame();
+
+        final PropagationBuffers buffers = RuleRunner.newBuffers();
+
+        Worker(AtomicBoolean cancelled, TranspositionTable deadEnds) {
+            rule4 = new Rule4(message -> {
+            }, deadEnds);
+            rule4.setCancelled(cancelled);
+        }
+    }
+
+    /**
+     * Explore the subtree below one board
+     */
+    private class BranchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+
+        private final int[] masks;
+
+        private final int depth;
+
+        BranchTask(Search search, int[] masks, int depth) {
+            this.search = search;
+            this.masks = masks;
+            this.depth = depth;
+        }
+
+        protected void compute() {
+            if (search.isStopped()) {
+                search.statistics.taskCancelled();
+                return;
+            }
+            long start = System.nanoTime();
+            Worker worker = search.worker.get();
+            List<BranchTask> children = new ArrayList<>();
+            long nodes = 0;
+            try {
+                worker.base.loadMasks(masks);
+                MGrid grid = worker.base.getGrid();
+                if (depth >= splitDepth) {
+                    if (worker.rule4.run(worker.base, search.context) == IRule.RULE_GAME_COMPLETE) {
+                        search.publish(grid);
+                    }
+                    nodes = worker.rule4.getNodes();
+                } else {
+                    int index = Rule4.selectCell(grid);
+                    if (index < 0) {
+                        if (worker.verify.verifyAll(worker.base, true) == IRule.RULE_GAME_COMPLETE) {
+                            search.publish(grid);
+                        }
+                    } else {
+                        for (int remaining = masks[index]; remaining != Candidates.NONE
+                                && !search.isStopped(); remaining &= remaining - 1) {
+                            nodes++;
+                            grid.copyFrom(masks);
+                            grid.clearChanges();
+                            grid.set(index, remaining & -remaining);
+                            switch (RuleRunner.propagate(worker.base, worker.buffers)) {
+                                case IRule.RULE_GAME_COMPLETE:
+                                    if (worker.verify.verifyAll(worker.base, true) == IRule.RULE_GAME_COMPLETE) {
+                                        search.publish(grid);
+                                    }
+                                    break;
+                                case IRule.RULE_NO_CHANGE:
+                                    if (deadEnds.contains(grid.getHash())) {
+                                        break;
+                                    }
+                                    int[] child = new int[MGrid.SIZE];
+                                    grid.copyTo(child);
+                                    BranchTask task = new BranchTask(search, child, depth + 1);
+                                    task.fork();
+                                    children.add(task);
+                                    break;
+                                default:
+                                    // IRule.RULE_NOT_POSSIBLE, try the next value
+                            }
+                        }
+                        search.context.charge(nodes);
+                    }
+                }
+            } catch (SudokuException e) {
+                // An internal failure, not a branch without a solution
+                search.fail(e);
+            }
+            search.statistics.taskRun(nodes, System.nanoTime() - start);
+
+            // Join the youngest first, the others may have been stolen
+            for (int i = children.size() - 1; i >= 0; i--) {
+                children.get(i).join();
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ * <p>
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * <p>
+ * Contributors:
+ * Henning Vitting - Initial API and implementation
+ */
+package com.vitting.rcpsudoku.rules.rule4;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for one ParallelRule4 run
+ * <br>
+ * The speedup is the time spent in all tasks divided by the wall clock time,
+ * with perfect scaling it is close to the parallelism of the pool.
+ */
+public class ParallelStatistics {
+
+    private final AtomicLong tasks = new AtomicLong();
+
+    private final AtomicLong cancelledTasks = new AtomicLong();
+
+    private final AtomicLong nodes = new AtomicLong();
+
+    private final AtomicLong taskNanos = new AtomicLong();
+
+    private long elapsedNanos;
+
+    private long steals;
+
+    private int parallelism;
+
+    void taskRun(long nodeCount, long nanos) {
+        tasks.incrementAndGet();
+        nodes.addAndGet(nodeCount);
+        taskNanos.addAndGet(nanos);
+    }
+
+    void taskCancelled() {
+        cancelledTasks.incrementAndGet();
+    }
+
+    void finish(long elapsedNanos, long steals, int parallelism) {
+        this.elapsedNanos = elapsedNanos;
+        this.steals = steals;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return long - the number of tasks that ran
+     */
+    public long getTasks() {
+        return tasks.get();
+    }
+
+    /**
+     * @return long - the number of tasks skipped because a solution was found
+     */
+    public long getCancelledTasks() {
+        return cancelledTasks.get();
+    }
+
+    /**
+     * @return long - the values tried by all tasks
+     */
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    /**
+     * @return long - the time spent in all tasks in nanoseconds
+     */
+    public long getTaskNanos() {
+        return taskNanos.get();
+    }
+
+    /**
+     * @return long - the wall clock time of the run in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return long - tasks stolen between the pool threads during the run
+     */
+    public long getSteals() {
+        return steals;
+    }
+
+    /**
+     * @return int - the parallelism of the pool
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return double - task time divided by wall clock time
+     */
+    public double getSpeedup() {
+        if (elapsedNanos == 0) {
+            return 0;
+        }
+        return (double) taskNanos.get() / elapsedNanos;
+    }
+
+    public String toString() {
+        return "tasks: " + getTasks() + " cancelled: " + getCancelledTasks()
+                + " nodes: " + getNodes() + " steals: " + steals
+                + " speedup: " + String.format("%.2f", getSpeedup())
+                + " of " + parallelism;
+    }
+}
@@ -14,53 +14,260 @@
 package com.vitting.rcpsudoku.rules.rule4;
 
 import com.vitting.rcpsudoku.jfc.utils.Logger;
-import com.vitting.rcpsudoku.model.MCell;
+import com.vitting.rcpsudoku.model.Candidates;
+import com.vitting.rcpsudoku.model.IRule;
+import com.vitting.rcpsudoku.model.IRuleExtension;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SolveContext;
 import com.vitting.rcpsudoku.model.SudokuBase;
 import com.vitting.rcpsudoku.model.SudokuException;
+import com.vitting.rcpsudoku.model.SudokuTopology;
+import com.vitting.rcpsudoku.model.VerifyGame;
+import com.vitting.rcpsudoku.rules.PropagationBuffers;
+import com.vitting.rcpsudoku.rules.RuleRunner;
 
-import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Rule 4, Some Sudoku games, normally catagorized as extremly difficult, cannot
  * be solved using the simple rules. Rule 4 uses an Ariadne's thread like
  * algoritm to traverse the remaining unsolved cells. <br>
- * For each step in the thread, rules 1 - 3 are used again.
+ * For each step in the thread, the simple rules run again from the cell tried
+ * and the next cell to try is the unsolved cell with the fewest candidates. <br>
+ * The thread is kept in preallocated arrays, one step per level, and the
+ * MGrid trail is used to undo a failed try, so the search neither recurses
+ * nor copies the board. <br>
+ * The same board can be reached by trying cells in a different order. A
+ * board whose tries all failed is noted by its MGrid hash in a
+ * TranspositionTable, and is not searched again when it is reached later.
+ * The table is only used when given to the constructor, it is kept across
+ * runs, so the tries of a run then depend on the puzzles run before.
  */
-final public class Rule4 {
+final public class Rule4 implements IRuleExtension {
 
     private Logger logger;
 
+    private VerifyGame verify = new VerifyGame();
+
+    // The thread, for each level the cell tried, the candidates not yet
+    // tried and the trail mark before the try
+    private int[] stepCell = new int[MGrid.SIZE];
+    private int[] stepRemaining = new int[MGrid.SIZE];
+    private int[] stepMark = new int[MGrid.SIZE];
+    private long[] stepHash = new long[MGrid.SIZE];
+
+    // The working memory of the propagation at each node
+    private final PropagationBuffers buffers = RuleRunner.newBuffers();
+
+    // Boards without a solution, null if not used
+    private TranspositionTable deadEnds;
+
+    // Number of tries in the last run
+    private long nodes;
+
+    // Number of boards found in deadEnds in the last run
+    private long pruned;
+
+    // Set by ParallelRule4 when another task found the solution
+    private AtomicBoolean cancelled = null;
+
+    /**
+     * Constructor, without a TranspositionTable so each run is independent
+     * of the puzzles run before
+     *
+     * @param logger Logger
+     */
     public Rule4(Logger logger) {
+        this(logger, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param logger Logger
+     * @param deadEnds TranspositionTable - boards without a solution, kept across runs and
+     *        may be shared, null for none
+     */
+    public Rule4(Logger logger, TranspositionTable deadEnds) {
         this.logger = logger;
+        this.deadEnds = deadEnds;
     }
 
-    static SudokuBase base = SudokuBase.getSingleInstance();
+    /* (non-Javadoc)
+     * @see com.vitting.rcpsudoku.model.IRuleExtension#run(com.vitting.rcpsudoku.model.SudokuBase)
+     */
+    public int run(SudokuBase base) throws SudokuException {
+        return run(base, new SolveContext());
+    }
 
-    public int run() throws SudokuException {
-        Vector<MCell> unsolvedList = new Vector<>(); // A Vector of unsolved MCells
+    /* (non-Javadoc)
+     * @see com.vitting.rcpsudoku.model.IRuleExtension#run(com.vitting.rcpsudoku.model.SudokuBase, com.vitting.rcpsudoku.model.SolveContext)
+     */
+    public int run(SudokuBase base, SolveContext context) throws SudokuException {
+        //DEBUG -- Running Rule 4
+        logger.logEvent("Running Rule 4, unsolved size: " + countUnsolved(base.getGrid()));
+
+        MGrid grid = base.getGrid();
+        grid.startTrail();
+        try {
+            int result = search(base, grid, context);
+            // Hand in the nodes since the last check
+            context.charge(nodes & (SolveContext.CHECK_INTERVAL - 1));
+            if (result != IRule.RULE_GAME_COMPLETE) {
+                // Leave the board as it was
+                grid.undo(0);
+            }
+            //DEBUG -- Rule 4 returned
+            logger.logEvent("Rule 4 returned: " + result + ", tries: " + nodes + ", pruned: " + pruned);
+            return result;
+        } finally {
+            grid.stopTrail();
+        }
+    }
+
+    /**
+     * @return long - the number of values tried by the last run
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return long - the number of boards of the last run known to have no solution
+     */
+    public long getPruned() {
+        return pruned;
+    }
+
+    /**
+     * The search gives up with RULE_NO_CHANGE when cancelled is set
+     *
+     * @param cancelled AtomicBoolean - shared flag, null to never cancel
+     */
+    void setCancelled(AtomicBoolean cancelled) {
+        this.cancelled = cancelled;
+    }
 
-        // Build the unsolved Vector
-        for (int x = 0; x < 9; x++) {
-            for (int y = 0; y < 9; y++) {
-                MCell cell = base.getCell(x, y);
-                if (!cell.isValueFound()) {
-                    unsolvedList.add(cell);
+    private int search(SudokuBase base, MGrid grid, SolveContext context) throws SudokuException {
+        nodes = 0;
+        pruned = 0;
+        // The board was run by the rules, only the tries need propagation
+        grid.clearChanges();
+        int depth = 0;
+        boolean descend = true;
+        while (true) {
+            if (descend) {
+                descend = false;
+                long hash = grid.getHash();
+                if (deadEnds != null && deadEnds.contains(hash)) {
+                    pruned++;
+                    if (depth == 0) {
+                        return IRule.RULE_NOT_POSSIBLE;
+                    }
+                    // As if the try failed, try the next value
+                    continue;
                 }
+                int index = selectCell(grid);
+                if (index < 0) {
+                    // Nothing left to try
+                    return verify.verifyAll(base, true);
+                }
+                stepCell[depth] = index;
+                stepRemaining[depth] = grid.get(index);
+                stepMark[depth] = grid.mark();
+                stepHash[depth] = hash;
+                depth++;
+            }
+
+            // Try the next value of the deepest step, step back when exhausted
+            int top = depth - 1;
+            grid.undo(stepMark[top]);
+            int remaining = stepRemaining[top];
+            if (remaining == Candidates.NONE) {
+                // All tries failed, the board has no solution
+                if (deadEnds != null) {
+                    deadEnds.add(stepHash[top]);
+                }
+                depth--;
+                if (depth == 0) {
+                    return IRule.RULE_NOT_POSSIBLE;
+                }
+                continue;
+            }
+            if (cancelled != null && cancelled.get()) {
+                return IRule.RULE_NO_CHANGE;
+            }
+            int value = remaining & -remaining;
+            stepRemaining[top] = remaining & ~value;
+            nodes++;
+            if ((nodes & (SolveContext.CHECK_INTERVAL - 1)) == 0
+                    && context.charge(SolveContext.CHECK_INTERVAL)) {
+                return IRule.RULE_BUDGET_EXCEEDED;
+            }
+            grid.set(stepCell[top], value);
+
+            // Test with the propagation
+            switch (RuleRunner.propagate(base, buffers)) {
+                case IRule.RULE_GAME_COMPLETE:
+                    if (verify.verifyAll(base, true) == IRule.RULE_GAME_COMPLETE) {
+                        return IRule.RULE_GAME_COMPLETE;
+                    }
+                    // All cells found but in conflict
+                    break;
+                case IRule.RULE_NO_CHANGE:
+                    descend = true;
+                    break;
+                default:
+                    // IRule.RULE_NOT_POSSIBLE, try the next value
             }
         }
-        //DEBUG -- Running Rule 4
-        logger.logEvent("Running Rule 4, unsolved size: " + unsolvedList.size());
+    }
+
+    /**
+     * Find the unsolved cell with the fewest candidates, ties are broken by
+     * the number of unsolved peers
+     *
+     * @param grid MGrid - the current candidates
+     * @return int - the cell index, -1 if all cells are solved
+     */
+    static int selectCell(MGrid grid) {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        int bestDegree = -1;
+        for (int i = 0; i < MGrid.SIZE; i++) {
+            int count = Candidates.count(grid.get(i));
+            if (count < 2 || count > bestCount) {
+                continue;
+            }
+            int degree = degree(grid, i);
+            if (count < bestCount || degree > bestDegree) {
+                best = i;
+                bestCount = count;
+                bestDegree = degree;
+            }
+        }
+        return best;
+    }
 
-        // Create the first Rule4Step and run it
-        SCell[] sCells = new SCell[unsolvedList.size()];
-        for (int i = 0; i < sCells.length; i++) {
-            sCells[i] = new SCell((MCell) unsolvedList.elementAt(i));
+    // Number of unsolved peers of the cell
+    private static int degree(MGrid grid, int index) {
+        int[] peers = SudokuTopology.peers(index);
+        int degree = 0;
+        for (int i = 0; i < SudokuTopology.PEERS; i++) {
+            if (!Candidates.isSingle(grid.get(peers[i]))) {
+                degree++;
+            }
         }
+        return degree;
+    }
 
-        Rule4Step step = new Rule4Step(sCells);
-        int result = step.runStep();
-        //DEBUG -- Rule4Step returned
-        logger.logEvent("Rule4Step returned: " + result);
-        return result;
+    private static int countUnsolved(MGrid grid) {
+        int unsolved = 0;
+        for (int i = 0; i < MGrid.SIZE; i++) {
+            if (!Candidates.isSingle(grid.get(i))) {
+                unsolved++;
+            }
+        }
+        return unsolved;
     }
 }
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ * <p>
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * <p>
+ * Contributors:
+ * Henning Vitting - Initial API and implementation
+ */
+package com.vitting.rcpsudoku.rules.rule4;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The boards known to have no solution, by MGrid hash
+ * <br>
+ * A board without a solution has none whatever puzzle or path led to it, so
+ * the table may be kept between runs and shared by the tasks of a parallel
+ * search. The table has a fixed size, buckets of 4 hashes, and a full
+ * bucket replaces one of its entries. It is lock free, a lost update only
+ * costs a repeated search.
+ */
+public final class TranspositionTable {
+
+    /** Default number of entries */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int WAYS = 4;
+
+    // 0 is an empty entry
+    private final AtomicLongArray entries;
+
+    private final int bucketMask;
+
+    /**
+     * Constructor
+     *
+     * @param capacity int - the number of entries, rounded up to a power of 2
+     */
+    public TranspositionTable(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Unsupported capacity: " + capacity);
+        }
+        int size = Math.max(WAYS, Integer.highestOneBit(capacity - 1) << 1);
+        entries = new AtomicLongArray(size);
+        bucketMask = (size - 1) & ~(WAYS - 1);
+    }
+
+    /**
+     * @param hash long - the MGrid hash of a board
+     * @return boolean - true if the board is known to have no solution
+     */
+    public boolean contains(long hash) {
+        long key = key(hash);
+        int bucket = (int) hash & bucketMask;
+        for (int i = 0; i < WAYS; i++) {
+            if (entries.get(bucket + i) == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Note a board without a solution
+     *
+     * @param hash long - the MGrid hash of the board
+     */
+    public void add(long hash) {
+        long key = key(hash);
+        int bucket = (int) hash & bucketMask;
+        for (int i = 0; i < WAYS; i++) {
+            long entry = entries.get(bucket + i);
+            if (entry == key || (entry == 0 && entries.compareAndSet(bucket + i, 0, key))) {
+                return;
+            }
+        }
+        // Bucket full, the hash picks the entry to replace
+        entries.set(bucket + (int) (hash >>> 62), key);
+    }
+
+    /**
+     * Forget all boards
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, 0);
+        }
+    }
+
+    /**
+     * @return int - the number of entries
+     */
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    private static long key(long hash) {
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,586 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules.sat;
+
+import com.vitting.rcpsudoku.model.SolveContext;
+
+/**
+ * Conflict driven clause learning SAT solver
+ * <br>
+ * Clauses are given in DIMACS style, variable v is the literal v and its
+ * negation -v, variables are numbered from 1. Inside, the literal of
+ * variable v is 2 (v - 1) and its negation 2 (v - 1) + 1.
+ * <br>
+ * Unit propagation watches two literals of each clause, a clause is only
+ * visited when one of its watched literals becomes false. A conflict is
+ * analysed back to the first unique implication point, the learnt clause
+ * is shortened by dropping literals implied by the others and the search
+ * jumps back to the second highest level in it. Decisions take the most
+ * active variable (VSIDS, activity bumped by conflicts and decaying) with
+ * its last value, and the search restarts after a Luby sequence of
+ * conflicts. Learnt clauses are kept, the formulas of a puzzle are small.
+ * <br>
+ * A solver is used for one formula, it is not thread safe.
+ */
+public final class CdclSolver {
+
+	/** The formula has a solution, see value() */
+	public static final int SATISFIABLE = 10;
+
+	/** The formula has no solution */
+	public static final int UNSATISFIABLE = 20;
+
+	/** The search ran out of budget */
+	public static final int UNKNOWN = 0;
+
+	private static final byte TRUE = 1;
+	private static final byte FALSE = -1;
+	private static final byte UNDEF = 0;
+
+	// Conflicts of the first restart, multiplied by the Luby sequence
+	private static final int RESTART_UNIT = 64;
+
+	private static final double VAR_DECAY = 0.95;
+
+	private final int variables;
+
+	// Value of each literal, a variable sets both of its literals
+	private final byte[] values;
+
+	// Decision level and reason clause of each variable, -1 for a decision
+	private final int[] level;
+	private final int[] reason;
+
+	// Last value of each variable, true for the positive literal
+	private final boolean[] polarity;
+
+	// The assigned literals in order, and where each level starts
+	private final int[] trail;
+	private int trailSize;
+	private int[] levelStart = new int[16];
+	private int levels;
+
+	// Next trail entry to propagate
+	private int head;
+
+	private int[][] clauses = new int[256][];
+	private int clauseCount;
+
+	// For each literal the clauses watching it
+	private final int[][] watches;
+	private final int[] watchCount;
+
+	// VSIDS, a binary heap of the variables by activity
+	private final double[] activity;
+	private double increment = 1;
+	private final int[] heap;
+	private final int[] heapIndex;
+	private int heapSize;
+
+	// Conflict analysis
+	private final boolean[] seen;
+	private int[] learnt = new int[32];
+
+	// Set when a clause added is false already
+	private boolean inconsistent;
+
+	private long conflicts;
+	private long decisions;
+	private long propagations;
+
+	/**
+	 * Constructor
+	 *
+	 * @param variables int - the number of variables, numbered 1 - variables
+	 */
+	public CdclSolver(int variables) {
+		this.variables = variables;
+		values = new byte[2 * variables];
+		level = new int[variables];
+		reason = new int[variables];
+		polarity = new boolean[variables];
+		trail = new int[variables];
+		watches = new int[2 * variables][];
+		watchCount = new int[2 * variables];
+		activity = new double[variables];
+		heap = new int[variables];
+		heapIndex = new int[variables];
+		seen = new boolean[variables];
+		for (int v = 0; v < variables; v++) {
+			heap[v] = v;
+			heapIndex[v] = v;
+		}
+		heapSize = variables;
+	}
+
+	/**
+	 * Add a clause, only before solve()
+	 *
+	 * @param literals int[] - the literals, v or -v for variable v
+	 * @return boolean - false if the formula is now known to have no solution
+	 */
+	public boolean addClause(int... literals) {
+		if (inconsistent) {
+			return false;
+		}
+		int[] clause = new int[literals.length];
+		int size = 0;
+		for (int literal : literals) {
+			int lit = literal > 0 ? 2 * (literal - 1) : 2 * (-literal - 1) + 1;
+			if (values[lit] == TRUE) {
+				// Satisfied by a unit clause
+				return true;
+			}
+			if (values[lit] == FALSE) {
+				continue;
+			}
+			boolean duplicate = false;
+			for (int i = 0; i < size; i++) {
+				if (clause[i] == lit) {
+					duplicate = true;
+				} else if (clause[i] == (lit ^ 1)) {
+					// Always true
+					return true;
+				}
+			}
+			if (!duplicate) {
+				clause[size++] = lit;
+			}
+		}
+		if (size == 0) {
+			inconsistent = true;
+			return false;
+		}
+		if (size == 1) {
+			assign(clause[0], -1);
+			if (propagate() >= 0) {
+				inconsistent = true;
+				return false;
+			}
+			return true;
+		}
+		if (size < clause.length) {
+			int[] shorter = new int[size];
+			System.arraycopy(clause, 0, shorter, 0, size);
+			clause = shorter;
+		}
+		attach(clause);
+		return true;
+	}
+
+	/**
+	 * Search for a solution
+	 *
+	 * @return int - SATISFIABLE or UNSATISFIABLE
+	 */
+	public int solve() {
+		return solve(null);
+	}
+
+	/**
+	 * Search for a solution within a budget, the decisions are the nodes
+	 *
+	 * @param context SolveContext - the budget, null for none
+	 * @return int - SATISFIABLE, UNSATISFIABLE or UNKNOWN when the budget ran out
+	 */
+	public int solve(SolveContext context) {
+		if (inconsistent) {
+			return UNSATISFIABLE;
+		}
+		int restart = 0;
+		long limit = RESTART_UNIT * luby(restart);
+		long restartConflicts = 0;
+		while (true) {
+			int conflict = propagate();
+			if (conflict >= 0) {
+				conflicts++;
+				restartConflicts++;
+				if (levels == 0) {
+					inconsistent = true;
+					return UNSATISFIABLE;
+				}
+				int size = analyze(conflict);
+				backtrack(backjumpLevel(size));
+				if (size == 1) {
+					assign(learnt[0], -1);
+				} else {
+					int[] clause = new int[size];
+					System.arraycopy(learnt, 0, clause, 0, size);
+					assign(clause[0], attach(clause));
+				}
+				increment /= VAR_DECAY;
+				continue;
+			}
+			if (restartConflicts >= limit) {
+				restart++;
+				limit = RESTART_UNIT * luby(restart);
+				restartConflicts = 0;
+				backtrack(0);
+				continue;
+			}
+			int variable = nextVariable();
+			if (variable < 0) {
+				return SATISFIABLE;
+			}
+			decisions++;
+			if ((decisions & (SolveContext.CHECK_INTERVAL - 1)) == 0 && context != null
+					&& context.charge(SolveContext.CHECK_INTERVAL)) {
+				backtrack(0);
+				return UNKNOWN;
+			}
+			newLevel();
+			assign(2 * variable + (polarity[variable] ? 0 : 1), -1);
+		}
+	}
+
+	/**
+	 * @param variable int - 1 - variables
+	 * @return boolean - the value of the variable in the solution
+	 */
+	public boolean value(int variable) {
+		return values[2 * (variable - 1)] == TRUE;
+	}
+
+	/**
+	 * @return int - the number of variables
+	 */
+	public int getVariables() {
+		return variables;
+	}
+
+	/**
+	 * @return long - the conflicts of the search
+	 */
+	public long getConflicts() {
+		return conflicts;
+	}
+
+	/**
+	 * @return long - the decisions of the search
+	 */
+	public long getDecisions() {
+		return decisions;
+	}
+
+	/**
+	 * @return long - the literals propagated
+	 */
+	public long getPropagations() {
+		return propagations;
+	}
+
+	// Store a clause and watch its first two literals, the clause index
+	private int attach(int[] clause) {
+		if (clauseCount == clauses.length) {
+			int[][] grown = new int[2 * clauseCount][];
+			System.arraycopy(clauses, 0, grown, 0, clauseCount);
+			clauses = grown;
+		}
+		clauses[clauseCount] = clause;
+		watch(clause[0], clauseCount);
+		watch(clause[1], clauseCount);
+		return clauseCount++;
+	}
+
+	private void watch(int lit, int clause) {
+		int[] list = watches[lit];
+		if (list == null) {
+			list = watches[lit] = new int[4];
+		} else if (watchCount[lit] == list.length) {
+			int[] grown = new int[2 * list.length];
+			System.arraycopy(list, 0, grown, 0, list.length);
+			list = watches[lit] = grown;
+		}
+		list[watchCount[lit]++] = clause;
+	}
+
+	private void assign(int lit, int cause) {
+		values[lit] = TRUE;
+		values[lit ^ 1] = FALSE;
+		int variable = lit >> 1;
+		level[variable] = levels;
+		reason[variable] = cause;
+		trail[trailSize++] = lit;
+	}
+
+	private void newLevel() {
+		if (levels == levelStart.length) {
+			int[] grown = new int[2 * levels];
+			System.arraycopy(levelStart, 0, grown, 0, levels);
+			levelStart = grown;
+		}
+		levelStart[levels++] = trailSize;
+	}
+
+	// Undo the assignments above level
+	private void backtrack(int target) {
+		if (levels <= target) {
+			return;
+		}
+		int start = levelStart[target];
+		for (int i = trailSize - 1; i >= start; i--) {
+			int lit = trail[i];
+			int variable = lit >> 1;
+			values[lit] = UNDEF;
+			values[lit ^ 1] = UNDEF;
+			polarity[variable] = (lit & 1) == 0;
+			if (heapIndex[variable] < 0) {
+				heapInsert(variable);
+			}
+		}
+		trailSize = start;
+		head = start;
+		levels = target;
+	}
+
+	// Propagate the trail, the index of a false clause or -1
+	private int propagate() {
+		while (head < trailSize) {
+			int falseLit = trail[head++] ^ 1;
+			propagations++;
+			int[] list = watches[falseLit];
+			int count = watchCount[falseLit];
+			int i = 0;
+			int j = 0;
+			while (i < count) {
+				int index = list[i++];
+				int[] clause = clauses[index];
+				// Keep the false literal in position 1
+				if (clause[0] == falseLit) {
+					clause[0] = clause[1];
+					clause[1] = falseLit;
+				}
+				if (values[clause[0]] == TRUE) {
+					list[j++] = index;
+					continue;
+				}
+				// Look for another literal to watch
+				boolean moved = false;
+				for (int k = 2; k < clause.length; k++) {
+					if (values[clause[k]] != FALSE) {
+						clause[1] = clause[k];
+						clause[k] = falseLit;
+						watch(clause[1], index);
+						moved = true;
+						break;
+					}
+				}
+				if (moved) {
+					continue;
+				}
+				list[j++] = index;
+				if (values[clause[0]] == FALSE) {
+					// Conflict, keep the remaining watches
+					while (i < count) {
+						list[j++] = list[i++];
+					}
+					watchCount[falseLit] = j;
+					head = trailSize;
+					return index;
+				}
+				assign(clause[0], index);
+			}
+			watchCount[falseLit] = j;
+		}
+		return -1;
+	}
+
+	/**
+	 * Learn a clause from a conflict, first unique implication point
+	 *
+	 * @return int - the size of the clause in learnt, the asserting literal first
+	 */
+	private int analyze(int conflict) {
+		int size = 1;
+		int open = 0;
+		int lit = -1;
+		int index = trailSize - 1;
+		int[] clause = clauses[conflict];
+		while (true) {
+			// The implied literal of a reason clause is in position 0
+			for (int k = lit < 0 ? 0 : 1; k < clause.length; k++) {
+				int q = clause[k];
+				int variable = q >> 1;
+				if (!seen[variable] && level[variable] > 0) {
+					seen[variable] = true;
+					bump(variable);
+					if (level[variable] == levels) {
+						open++;
+					} else {
+						if (size == learnt.length) {
+							int[] grown = new int[2 * size];
+							System.arraycopy(learnt, 0, grown, 0, size);
+							learnt = grown;
+						}
+						learnt[size++] = q;
+					}
+				}
+			}
+			// Latest seen literal on the trail
+			while (!seen[trail[index] >> 1]) {
+				index--;
+			}
+			lit = trail[index--];
+			seen[lit >> 1] = false;
+			open--;
+			if (open == 0) {
+				break;
+			}
+			clause = clauses[reason[lit >> 1]];
+		}
+		learnt[0] = lit ^ 1;
+
+		// Drop literals whose reason is covered by the other literals, the
+		// dropped ones are swapped behind the kept ones to clear seen below
+		int kept = 1;
+		for (int i = 1; i < size; i++) {
+			int q = learnt[i];
+			if (!implied(q)) {
+				learnt[i] = learnt[kept];
+				learnt[kept++] = q;
+			}
+		}
+		for (int i = 1; i < size; i++) {
+			seen[learnt[i] >> 1] = false;
+		}
+		return kept;
+	}
+
+	// True if the reason of q only has literals of the clause or level 0
+	private boolean implied(int q) {
+		int cause = reason[q >> 1];
+		if (cause < 0) {
+			return false;
+		}
+		int[] clause = clauses[cause];
+		for (int k = 1; k < clause.length; k++) {
+			int variable = clause[k] >> 1;
+			if (!seen[variable] && level[variable] > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Level to jump back to, moves the literal of that level to position 1
+	private int backjumpLevel(int size) {
+		if (size == 1) {
+			return 0;
+		}
+		int best = 1;
+		for (int i = 2; i < size; i++) {
+			if (level[learnt[i] >> 1] > level[learnt[best] >> 1]) {
+				best = i;
+			}
+		}
+		int swap = learnt[1];
+		learnt[1] = learnt[best];
+		learnt[best] = swap;
+		return level[learnt[1] >> 1];
+	}
+
+	// The unassigned variable with the highest activity, -1 if none
+	private int nextVariable() {
+		while (heapSize > 0) {
+			int variable = heapRemoveMax();
+			if (values[2 * variable] == UNDEF) {
+				return variable;
+			}
+		}
+		return -1;
+	}
+
+	private void bump(int variable) {
+		activity[variable] += increment;
+		if (activity[variable] > 1e100) {
+			for (int v = 0; v < variables; v++) {
+				activity[v] *= 1e-100;
+			}
+			increment *= 1e-100;
+		}
+		if (heapIndex[variable] >= 0) {
+			heapUp(heapIndex[variable]);
+		}
+	}
+
+	private void heapInsert(int variable) {
+		heap[heapSize] = variable;
+		heapIndex[variable] = heapSize;
+		heapUp(heapSize++);
+	}
+
+	private int heapRemoveMax() {
+		int top = heap[0];
+		heapIndex[top] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			heapDown(0);
+		}
+		return top;
+	}
+
+	private void heapUp(int i) {
+		int variable = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (activity[heap[parent]] >= activity[variable]) {
+				break;
+			}
+			heap[i] = heap[parent];
+			heapIndex[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = variable;
+		heapIndex[variable] = i;
+	}
+
+	private void heapDown(int i) {
+		int variable = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+				child++;
+			}
+			if (activity[heap[child]] <= activity[variable]) {
+				break;
+			}
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = variable;
+		heapIndex[variable] = i;
+	}
+
+	// The Luby sequence 1 1 2 1 1 2 4 1 1 2 ..., i from 0
+	private static long luby(int i) {
+		int size = 1;
+		int exponent = 0;
+		while (size < i + 1) {
+			exponent++;
+			size = 2 * size + 1;
+		}
+		while (size - 1 != i) {
+			size = (size - 1) >> 1;
+			exponent--;
+			i = i % size;
+		}
+		return 1L << exponent;
+	}
+}
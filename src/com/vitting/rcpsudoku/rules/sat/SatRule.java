@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules.sat;
+
+import com.vitting.rcpsudoku.jfc.utils.Logger;
+import com.vitting.rcpsudoku.model.IRule;
+import com.vitting.rcpsudoku.model.IRuleExtension;
+import com.vitting.rcpsudoku.model.MGrid;
+import com.vitting.rcpsudoku.model.SolveContext;
+import com.vitting.rcpsudoku.model.SudokuBase;
+import com.vitting.rcpsudoku.model.SudokuException;
+
+/**
+ * Complete search with a SAT solver, can be used by RuleRunner in place of
+ * Rule 4
+ * <br>
+ * The board is encoded by SudokuCnf, the initial values of the cells as
+ * givens, and solved by CdclSolver. The solution is written back into the
+ * board.
+ */
+public final class SatRule implements IRuleExtension {
+
+	private final Logger logger;
+
+	private final SudokuCnf cnf = new SudokuCnf(3);
+
+	private final int[] masks = new int[MGrid.SIZE];
+
+	private final boolean[] givens = new boolean[MGrid.SIZE];
+
+	/**
+	 * Constructor
+	 *
+	 * @param logger Logger
+	 */
+	public SatRule(Logger logger) {
+		this.logger = logger;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IRuleExtension#run(com.vitting.rcpsudoku.model.SudokuBase)
+	 */
+	public int run(SudokuBase base) throws SudokuException {
+		return run(base, null);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.vitting.rcpsudoku.model.IRuleExtension#run(com.vitting.rcpsudoku.model.SudokuBase, com.vitting.rcpsudoku.model.SolveContext)
+	 */
+	public int run(SudokuBase base, SolveContext context) throws SudokuException {
+		MGrid grid = base.getGrid();
+		grid.copyTo(masks);
+		for (int i = 0; i < MGrid.SIZE; i++) {
+			givens[i] = base.getCell(i).isInitialValue();
+		}
+		CdclSolver solver = new CdclSolver(cnf.getVariables());
+		int result = cnf.encode(masks, givens, solver) ? solver.solve(context) : CdclSolver.UNSATISFIABLE;
+		if (result == CdclSolver.UNKNOWN) {
+			logger.logEvent("SatRule: budget exceeded, decisions: " + solver.getDecisions());
+			return IRule.RULE_BUDGET_EXCEEDED;
+		}
+		if (result != CdclSolver.SATISFIABLE) {
+			logger.logEvent("SatRule: no solution, conflicts: " + solver.getConflicts());
+			return IRule.RULE_NOT_POSSIBLE;
+		}
+		cnf.decode(solver, masks);
+		grid.copyFrom(masks);
+		logger.logEvent("SatRule: solved, decisions: " + solver.getDecisions()
+				+ ", conflicts: " + solver.getConflicts());
+		return IRule.RULE_GAME_COMPLETE;
+	}
+}
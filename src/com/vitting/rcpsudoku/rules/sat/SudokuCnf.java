@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2006 Henning Vitting and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Henning Vitting - Initial API and implementation
+ *
+ */
+package com.vitting.rcpsudoku.rules.sat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CNF encoding of a Sudoku board of any size
+ * <br>
+ * A board of order n has n * n values and n^4 cells, the 9 x 9 board has
+ * order 3. Variable (cell, value) is true when the cell holds the value.
+ * Each cell holds at least one and at most one value, and each house holds
+ * each value at least once and at most once. The houses are the rows,
+ * columns and blocks, variants add houses such as the diagonals with
+ * addHouse().
+ * <br>
+ * Only the candidates left on the board get clauses, a removed candidate
+ * is a false unit and a given a true unit, so the work of the rules run
+ * before is not repeated by the solver.
+ */
+public final class SudokuCnf {
+
+	private final int size;
+
+	private final int cells;
+
+	private final List<int[]> houses = new ArrayList<>();
+
+	/**
+	 * Constructor, the rows, columns and blocks of a board
+	 *
+	 * @param order int - the side of a block, 3 for the 9 x 9 board, at most 5
+	 */
+	public SudokuCnf(int order) {
+		if (order < 1 || order > 5) {
+			throw new IllegalArgumentException("Unsupported order: " + order);
+		}
+		size = order * order;
+		cells = size * size;
+		for (int line = 0; line < size; line++) {
+			int[] row = new int[size];
+			int[] column = new int[size];
+			int[] block = new int[size];
+			int firstRow = (line / order) * order;
+			int firstColumn = (line % order) * order;
+			for (int i = 0; i < size; i++) {
+				row[i] = line * size + i;
+				column[i] = i * size + line;
+				block[i] = (firstRow + i / order) * size + firstColumn + i % order;
+			}
+			houses.add(row);
+			houses.add(column);
+			houses.add(block);
+		}
+	}
+
+	/**
+	 * Add a house of a variant, its cells hold each value once
+	 *
+	 * @param house int[] - the cell indexes, size of them
+	 */
+	public void addHouse(int[] house) {
+		if (house.length != size) {
+			throw new IllegalArgumentException("A house has " + size + " cells");
+		}
+		houses.add(house.clone());
+	}
+
+	/**
+	 * @return int - the number of values, also the cells of a house
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return int - the number of cells
+	 */
+	public int getCells() {
+		return cells;
+	}
+
+	/**
+	 * @return int - the number of variables of the encoding
+	 */
+	public int getVariables() {
+		return cells * size;
+	}
+
+	/**
+	 * @param cell int - cell index, row * size + column
+	 * @param value int - 0 to size-1
+	 * @return int - the variable of the cell holding the value
+	 */
+	public int variable(int cell, int value) {
+		return cell * size + value + 1;
+	}
+
+	/**
+	 * Add the clauses of a board to a solver
+	 *
+	 * @param masks int[] - the candidates of each cell, bit v for value v
+	 * @param givens boolean[] - true for a given cell, its single candidate
+	 *               is the value, may be null
+	 * @param solver CdclSolver - a new solver with getVariables() variables
+	 * @return boolean - false if the board is known to have no solution
+	 */
+	public boolean encode(int[] masks, boolean[] givens, CdclSolver solver) {
+		boolean possible = true;
+		int[] clause = new int[size];
+		for (int cell = 0; cell < cells; cell++) {
+			int mask = masks[cell];
+			// Givens and removed candidates are units
+			if (givens != null && givens[cell]) {
+				if (Integer.bitCount(mask) != 1) {
+					return false;
+				}
+				possible &= solver.addClause(variable(cell, Integer.numberOfTrailingZeros(mask)));
+			}
+			int count = 0;
+			for (int value = 0; value < size; value++) {
+				if ((mask & (1 << value)) == 0) {
+					possible &= solver.addClause(-variable(cell, value));
+				} else {
+					clause[count++] = variable(cell, value);
+				}
+			}
+			possible &= exactlyOne(clause, count, solver);
+		}
+		for (int[] house : houses) {
+			for (int value = 0; value < size; value++) {
+				int count = 0;
+				for (int cell : house) {
+					if ((masks[cell] & (1 << value)) != 0) {
+						clause[count++] = variable(cell, value);
+					}
+				}
+				possible &= exactlyOne(clause, count, solver);
+			}
+		}
+		return possible;
+	}
+
+	/**
+	 * Read the solution of a solved formula
+	 *
+	 * @param solver CdclSolver - a solver that returned SATISFIABLE
+	 * @param masks int[] - receives the single candidate of each cell
+	 */
+	public void decode(CdclSolver solver, int[] masks) {
+		for (int cell = 0; cell < cells; cell++) {
+			masks[cell] = 0;
+			for (int value = 0; value < size; value++) {
+				if (solver.value(variable(cell, value))) {
+					masks[cell] = 1 << value;
+					break;
+				}
+			}
+		}
+	}
+
+	// At least one of the literals, and no two of them
+	private static boolean exactlyOne(int[] literals, int count, CdclSolver solver) {
+		int[] atLeast = new int[count];
+		System.arraycopy(literals, 0, atLeast, 0, count);
+		boolean possible = solver.addClause(atLeast);
+		for (int i = 0; i < count; i++) {
+			for (int j = i + 1; j < count; j++) {
+				possible &= solver.addClause(-literals[i], -literals[j]);
+			}
+		}
+		return possible;
+	}
+}